@@ -0,0 +1,66 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+import static org.junit.Assert.assertEquals;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Debug;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+/**
+ * Makes sure drawing paths (and their points) doesn't allocate anything once their Paints are cached.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DrawPathAllocationTest {
+    private static void drawAll(ArrayList<DrawPath> paths, Canvas canvas, PointOverlay overlay) {
+        overlay.begin(2, 1);
+        for (int i = 0; i < paths.size(); i++) {
+            paths.get(i).draw(canvas, 2, 1);
+            if (paths.get(i).drawPoints) {
+                overlay.add(paths.get(i));
+            }
+        }
+        overlay.draw(canvas);
+    }
+
+    @Test
+    public void draw_doesNotAllocateInSteadyState() {
+        ArrayList<DrawPath> paths = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            DrawPath path = new DrawPath(null);
+            path.appearance = new DrawAppearance(Color.BLACK, i % 2 == 0 ? Color.RED : -1);
+            if (i % 5 == 0) {
+                path.appearance.useDP = true;
+                path.appearance.effect = DrawAppearance.EFFECTS.dashed;
+            }
+            path.drawPoints = i % 3 == 0;
+            for (int j = 0; j < 20; j++) {
+                path.addPoint(new Point(i * 5 + j, j * 10));
+            }
+            path.finalise();
+            path.cachePath();
+            paths.add(path);
+        }
+        Bitmap bitmap = Bitmap.createBitmap(256, 256, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        PointOverlay overlay = new PointOverlay();
+        // The first frame makes the Paints and grows the overlay's buffers
+        drawAll(paths, canvas, overlay);
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        for (int frame = 0; frame < 10; frame++) {
+            drawAll(paths, canvas, overlay);
+        }
+        int allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+        assertEquals(0, allocations);
+    }
+}
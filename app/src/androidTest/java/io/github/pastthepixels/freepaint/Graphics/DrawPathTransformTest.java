@@ -0,0 +1,70 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.RectF;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Makes sure a path's transform is used for bounds, hit testing, and erasing, without changing its points.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DrawPathTransformTest {
+    private static DrawPath square(float left, float top, float size) {
+        DrawPath path = new DrawPath(null);
+        path.appearance = new DrawAppearance(-1, Color.RED);
+        path.isClosed = true;
+        path.addPoint(new Point(left, top));
+        path.addPoint(new Point(left + size, top));
+        path.addPoint(new Point(left + size, top + size));
+        path.addPoint(new Point(left, top + size));
+        path.cachePath();
+        return path;
+    }
+
+    @Test
+    public void transformed_movesBoundsAndHitTesting() {
+        DrawPath path = square(0, 0, 10);
+        Matrix matrix = new Matrix();
+        matrix.setTranslate(100, 0);
+        matrix.postScale(2, 2);
+        DrawPath moved = path.transformed(matrix);
+        // The points (and cached Path) are shared, not rewritten
+        assertSame(path.points, moved.points);
+        assertSame(path.getPath(), moved.getPath());
+        RectF bounds = moved.getBounds();
+        assertEquals(200, bounds.left, 0.001);
+        assertEquals(220, bounds.right, 0.001);
+        assertEquals(20, bounds.bottom, 0.001);
+        assertTrue(moved.contains(210, 10));
+        assertFalse(moved.contains(5, 5));
+        assertTrue(path.contains(5, 5));
+    }
+
+    @Test
+    public void erase_usesTransform() {
+        Matrix matrix = new Matrix();
+        matrix.setTranslate(100, 0);
+        DrawPath path = square(0, 0, 10).transformed(matrix).clone();
+        // Erasing where the path used to be does nothing
+        assertFalse(path.erase(square(0, 0, 10)));
+        // Erasing the right half of where it is now keeps the left half, still with the same transform
+        assertTrue(path.erase(square(105, -5, 20)));
+        path.cachePath();
+        assertTrue(path.contains(102, 5));
+        assertFalse(path.contains(108, 5));
+        float[] values = new float[9];
+        path.getTransform().getValues(values);
+        assertEquals(100, values[Matrix.MTRANS_X], 0);
+        assertEquals(105, path.getBounds().right, 0.01);
+    }
+}
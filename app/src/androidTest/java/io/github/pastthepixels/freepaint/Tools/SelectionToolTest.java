@@ -0,0 +1,91 @@
+package io.github.pastthepixels.freepaint.Tools;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import android.graphics.Color;
+import android.view.MotionEvent;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.github.pastthepixels.freepaint.Graphics.DrawAppearance;
+import io.github.pastthepixels.freepaint.Graphics.DrawCanvas;
+import io.github.pastthepixels.freepaint.Graphics.DrawPath;
+import io.github.pastthepixels.freepaint.Graphics.Point;
+import io.github.pastthepixels.freepaint.History.PersistentVector;
+
+/**
+ * Makes sure a selection drag that never finishes leaves the document like it was.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SelectionToolTest {
+    private DrawCanvas canvas;
+    private SelectionTool tool;
+    private PersistentVector<DrawPath> document;
+
+    /**
+     * Sends a touch event to the tool, at a point in document coordinates
+     */
+    private void touch(int action, float x, float y) {
+        Point origin = canvas.mapPoint(0, 0);
+        float scale = canvas.getScaleFactor();
+        MotionEvent event = MotionEvent.obtain(0, 0, action, (x - origin.x) * scale, (y - origin.y) * scale, 0);
+        tool.onTouchEvent(event);
+        event.recycle();
+    }
+
+    /**
+     * Makes a document with one square in it, selects the square, and starts dragging it
+     */
+    @Before
+    public void startDrag() {
+        canvas = new DrawCanvas(InstrumentationRegistry.getInstrumentation().getTargetContext());
+        canvas.layout(0, 0, 1000, 1000);
+        DrawPath square = new DrawPath(null);
+        square.appearance = new DrawAppearance(-1, Color.RED);
+        square.isClosed = true;
+        square.addPoint(new Point(100, 100));
+        square.addPoint(new Point(200, 100));
+        square.addPoint(new Point(200, 200));
+        square.addPoint(new Point(100, 200));
+        square.cachePath();
+        canvas.paths = canvas.paths.append(square);
+        document = canvas.paths;
+        canvas.setTool(DrawCanvas.TOOLS.select);
+        tool = (SelectionTool) canvas.getTool();
+
+        touch(MotionEvent.ACTION_DOWN, 50, 50);
+        touch(MotionEvent.ACTION_MOVE, 250, 250);
+        touch(MotionEvent.ACTION_UP, 250, 250);
+        touch(MotionEvent.ACTION_DOWN, 150, 150);
+        touch(MotionEvent.ACTION_MOVE, 160, 150);
+        touch(MotionEvent.ACTION_MOVE, 200, 150);
+        // The selected square is only drawn by the drag layer while it's being dragged
+        assertNotSame(document, canvas.paths);
+    }
+
+    @Test
+    public void cancel_restoresDocument() {
+        touch(MotionEvent.ACTION_CANCEL, 200, 150);
+        assertSame(document, canvas.paths);
+        assertNull(tool.getDragLayer());
+        // Letting go afterwards doesn't move anything or add to the history either
+        touch(MotionEvent.ACTION_UP, 200, 150);
+        assertSame(document, canvas.paths);
+        assertFalse(canvas.history.undo(canvas));
+    }
+
+    @Test
+    public void init_restoresDocument() {
+        canvas.setTool(DrawCanvas.TOOLS.select);
+        assertSame(document, canvas.paths);
+        assertNull(tool.getDragLayer());
+    }
+}
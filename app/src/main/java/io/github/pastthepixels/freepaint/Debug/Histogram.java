@@ -0,0 +1,98 @@
+package io.github.pastthepixels.freepaint.Debug;
+
+import java.util.Arrays;
+
+/**
+ * Counts values (ex. latencies in microseconds) in buckets, like an HdrHistogram: values are exact below
+ * <code>SUB_BUCKET_COUNT</code>, and above that every power of two is split into <code>SUB_BUCKET_COUNT / 2</code>
+ * buckets, so every value is stored to within about 1.5%. That way it holds any number of samples in a fixed
+ * amount of memory, and recording one is just an array increment.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+
+    /**
+     * Largest power of two (past the first bucket) we store -- anything bigger is counted as the largest value.
+     * 2^(7 + 33) microseconds is more than enough.
+     */
+    private static final int MAX_MAGNITUDE = 33;
+
+    private final long[] counts = new long[(MAX_MAGNITUDE + 2) * SUB_BUCKET_HALF];
+    private long totalCount = 0;
+    private long maxValue = 0;
+
+    /**
+     * Adds a value.
+     *
+     * @param value The value, which can't be negative (negative values are counted as 0)
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts[indexOf(value)]++;
+        totalCount++;
+        maxValue = Math.max(maxValue, value);
+    }
+
+    /**
+     * Finds the value that <code>percentile</code> percent of values are at or below.
+     *
+     * @param percentile From 0 to 100
+     * @return The value (the highest value in its bucket, but never more than the largest value recorded), or 0 if
+     * nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                // The last bucket also holds everything too big for the others
+                return i == counts.length - 1 ? maxValue : Math.min(highestValueIn(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * Throws away every value.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        maxValue = 0;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        // How many bits the value is shifted by to fit in [SUB_BUCKET_HALF, SUB_BUCKET_COUNT)
+        int magnitude = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        if (magnitude > MAX_MAGNITUDE) {
+            return (MAX_MAGNITUDE + 2) * SUB_BUCKET_HALF - 1;
+        }
+        return magnitude * SUB_BUCKET_HALF + (int) (value >>> magnitude);
+    }
+
+    private static long highestValueIn(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int magnitude = index / SUB_BUCKET_HALF - 1;
+        long subBucket = index - (long) magnitude * SUB_BUCKET_HALF;
+        return ((subBucket + 1) << magnitude) - 1;
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.pastthepixels.freepaint.Debug;
+
+import android.view.Choreographer;
+import android.view.MotionEvent;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Measures touch-to-frame latency: how long it takes from a touch (its <code>MotionEvent</code> event time)
+ * until the frame that first shows it.
+ * <p>
+ * Touches wait in <code>pending</code> until the canvas draws (<code>onFrameDrawn</code>). Then a
+ * <code>Choreographer</code> frame callback is posted, and the frame time it gets -- the vsync of the frame after
+ * the one we drew into, which is about when our frame reaches the screen -- is used as the time each touch was shown.
+ * Latencies are kept in a <code>Histogram</code> in microseconds.
+ * <p>
+ * Everything here runs on the UI thread. Nothing is recorded unless <code>Metrics.enabled</code> is set.
+ */
+public class LatencyTracker implements Choreographer.FrameCallback {
+    /**
+     * Log tag for the summary written when the performance overlay is turned off (see <code>dump</code>)
+     */
+    public static final String TAG = "LatencyTracker";
+
+    private final Histogram histogram = new Histogram();
+
+    /**
+     * Event times (in nanoseconds, on the same clock as <code>System.nanoTime</code>) of touches that haven't been drawn
+     */
+    private long[] pending = new long[64];
+    private int pendingCount = 0;
+
+    /**
+     * Event times of touches that have been drawn, waiting for the next frame callback
+     */
+    private long[] drawn = new long[64];
+    private int drawnCount = 0;
+
+    private boolean callbackPosted = false;
+
+    /**
+     * Records a touch event. Call this from a tool's onTouchEvent.
+     *
+     * @param event The event
+     */
+    public void onInput(MotionEvent event) {
+        if (!Metrics.enabled) {
+            return;
+        }
+        if (pendingCount == pending.length) {
+            pending = Arrays.copyOf(pending, pending.length * 2);
+        }
+        // Event times are in uptimeMillis, which uses the same clock as System.nanoTime/frame times
+        pending[pendingCount++] = event.getEventTime() * 1_000_000;
+    }
+
+    /**
+     * Call this when the canvas draws: every touch recorded since the last call is in this frame.
+     */
+    public void onFrameDrawn() {
+        if (pendingCount == 0) {
+            return;
+        }
+        if (drawnCount + pendingCount > drawn.length) {
+            drawn = Arrays.copyOf(drawn, Math.max(drawn.length * 2, drawnCount + pendingCount));
+        }
+        System.arraycopy(pending, 0, drawn, drawnCount, pendingCount);
+        drawnCount += pendingCount;
+        pendingCount = 0;
+        if (!callbackPosted) {
+            callbackPosted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Called by Choreographer on the next vsync after a frame we drew.
+     *
+     * @param frameTimeNanos When the frame started, in System.nanoTime() time
+     */
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        callbackPosted = false;
+        for (int i = 0; i < drawnCount; i++) {
+            histogram.record((frameTimeNanos - drawn[i]) / 1000);
+        }
+        drawnCount = 0;
+    }
+
+    /**
+     * @param percentile From 0 to 100
+     * @return The latency at that percentile, in microseconds
+     */
+    public long getPercentile(double percentile) {
+        return histogram.getValueAtPercentile(percentile);
+    }
+
+    /**
+     * @return How many touches have been measured
+     */
+    public long getCount() {
+        return histogram.getTotalCount();
+    }
+
+    /**
+     * Throws away every measurement.
+     */
+    public void reset() {
+        histogram.reset();
+        pendingCount = 0;
+        drawnCount = 0;
+    }
+
+    /**
+     * Summarises the histogram, ex. for logs or comparing two ways of drawing.
+     *
+     * @return A line like "n=120 p50=16.2ms p95=30.1ms p99=41.0ms max=50.3ms"
+     */
+    public String dump() {
+        return String.format(Locale.ROOT, "n=%d p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms",
+                histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50) / 1000f,
+                histogram.getValueAtPercentile(95) / 1000f,
+                histogram.getValueAtPercentile(99) / 1000f,
+                histogram.getMaxValue() / 1000f
+        );
+    }
+}
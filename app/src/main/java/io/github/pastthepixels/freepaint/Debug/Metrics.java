@@ -0,0 +1,196 @@
+package io.github.pastthepixels.freepaint.Debug;
+
+import java.util.Arrays;
+
+/**
+ * Collects performance numbers for the <code>PerformanceOverlay</code>.
+ * <p>
+ * Every metric is a constant index into preallocated arrays, so recording a number never allocates and costs about
+ * as much as a field write. Nothing is recorded unless <code>enabled</code> is set.
+ * There are three kinds of metrics:
+ * <ul>
+ *     <li>Timers keep the last <code>WINDOW</code> durations, so we can get rolling percentiles.</li>
+ *     <li>Counters are added up over a frame, and then the total is kept until the next frame ends.</li>
+ *     <li>Gauges are just the last value that was set.</li>
+ * </ul>
+ */
+public final class Metrics {
+    // Timers
+    public static final int DRAW = 0;
+    public static final int RENDER_THREAD_DRAW = 1;
+    public static final int INPUT_TO_FRAME = 2;
+    public static final int FINALISE = 3;
+    public static final int ERASE = 4;
+    public static final int SVG_IO = 5;
+    public static final String[] TIMER_NAMES = {"onDraw", "Render thread", "Input to onDraw", "Finalise", "Erase", "SVG I/O"};
+
+    // Counters
+    public static final int PATHS_DRAWN = 0;
+    public static final int PATHS_CULLED = 1;
+    public static final int POINTS_SUBMITTED = 2;
+    private static final int COUNTER_COUNT = 3;
+
+    // Gauges
+    public static final int HISTORY_MEMORY = 0;
+    private static final int GAUGE_COUNT = 1;
+
+    /**
+     * Number of samples each timer keeps
+     */
+    public static final int WINDOW = 128;
+
+    /**
+     * Whether metrics are being recorded
+     */
+    public static volatile boolean enabled = false;
+
+    private static final Object lock = new Object();
+
+    // Timers: a ring buffer of durations (in nanoseconds) for each
+    private static final long[][] samples = new long[TIMER_NAMES.length][WINDOW];
+    private static final int[] sampleCount = new int[TIMER_NAMES.length];
+    private static final int[] nextSample = new int[TIMER_NAMES.length];
+    /**
+     * Samples are copied here and sorted to find percentiles
+     */
+    private static final long[] sorted = new long[WINDOW];
+
+    // Counters
+    private static final long[] counters = new long[COUNTER_COUNT];
+    private static final long[] lastFrameCounters = new long[COUNTER_COUNT];
+
+    // Gauges
+    private static final long[] gauges = new long[GAUGE_COUNT];
+
+    private Metrics() {
+    }
+
+    /**
+     * Starts timing something. Pass the result to <code>stop</code>.
+     *
+     * @return The current time in nanoseconds, or 0 if metrics aren't enabled
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Stops timing something, and records how long it took.
+     *
+     * @param timer Which timer to record to (ex. <code>Metrics.DRAW</code>)
+     * @param start What <code>start</code> returned
+     */
+    public static void stop(int timer, long start) {
+        if (start != 0) {
+            record(timer, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param timer    Which timer to record to
+     * @param duration How long something took, in nanoseconds
+     */
+    public static void record(int timer, long duration) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (lock) {
+            samples[timer][nextSample[timer]] = duration;
+            nextSample[timer] = (nextSample[timer] + 1) % WINDOW;
+            sampleCount[timer] = Math.min(sampleCount[timer] + 1, WINDOW);
+        }
+    }
+
+    /**
+     * Adds to a counter for the current frame.
+     *
+     * @param counter Which counter (ex. <code>Metrics.PATHS_DRAWN</code>)
+     * @param amount  How much to add
+     */
+    public static void count(int counter, long amount) {
+        if (enabled) {
+            counters[counter] += amount;
+        }
+    }
+
+    /**
+     * Sets a gauge.
+     *
+     * @param gauge Which gauge (ex. <code>Metrics.HISTORY_MEMORY</code>)
+     * @param value The value
+     */
+    public static void set(int gauge, long value) {
+        if (enabled) {
+            gauges[gauge] = value;
+        }
+    }
+
+    /**
+     * Ends a frame: counters are saved (see <code>getCounter</code>) and start again from 0.
+     */
+    public static void endFrame() {
+        if (!enabled) {
+            return;
+        }
+        System.arraycopy(counters, 0, lastFrameCounters, 0, COUNTER_COUNT);
+        Arrays.fill(counters, 0);
+    }
+
+    /**
+     * @return How many samples a timer has (up to <code>WINDOW</code>)
+     */
+    public static int getSampleCount(int timer) {
+        synchronized (lock) {
+            return sampleCount[timer];
+        }
+    }
+
+    /**
+     * Finds a percentile of the recent samples of a timer.
+     *
+     * @param timer      Which timer
+     * @param percentile From 0 to 100
+     * @return The duration in nanoseconds, or 0 if there aren't any samples
+     */
+    public static long getPercentile(int timer, float percentile) {
+        synchronized (lock) {
+            int count = sampleCount[timer];
+            if (count == 0) {
+                return 0;
+            }
+            System.arraycopy(samples[timer], 0, sorted, 0, count);
+            Arrays.sort(sorted, 0, count);
+            int rank = (int) Math.ceil(percentile / 100 * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, rank))];
+        }
+    }
+
+    /**
+     * @return The total of a counter over the last frame
+     */
+    public static long getCounter(int counter) {
+        return lastFrameCounters[counter];
+    }
+
+    /**
+     * @return The last value of a gauge
+     */
+    public static long getGauge(int gauge) {
+        return gauges[gauge];
+    }
+
+    /**
+     * Throws away every number that's been recorded.
+     */
+    public static void reset() {
+        synchronized (lock) {
+            Arrays.fill(sampleCount, 0);
+            Arrays.fill(nextSample, 0);
+        }
+        Arrays.fill(counters, 0);
+        Arrays.fill(lastFrameCounters, 0);
+        Arrays.fill(gauges, 0);
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.pastthepixels.freepaint.Debug;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+/**
+ * Draws the numbers in <code>Metrics</code> in the corner of the screen.
+ * Text is built in a reused StringBuilder and drawn from a reused char array, so drawing it doesn't make garbage
+ * (which would show up in the numbers it's showing).
+ */
+public class PerformanceOverlay {
+    /**
+     * Size of the text, in dp
+     */
+    private static final float TEXT_SIZE = 11;
+    private static final long NANOS_PER_MILLI = 1_000_000;
+    private static final long MICROS_PER_MILLI = 1000;
+    private static final long BYTES_PER_MB = 1024 * 1024;
+
+    private final Paint textPaint = new Paint();
+    private final Paint backgroundPaint = new Paint();
+    private final StringBuilder line = new StringBuilder();
+    private char[] chars = new char[64];
+    private final LatencyTracker latencyTracker;
+
+    /**
+     * Constructor
+     *
+     * @param latencyTracker Touch-to-frame latencies to show with the other numbers
+     */
+    public PerformanceOverlay(LatencyTracker latencyTracker) {
+        this.latencyTracker = latencyTracker;
+        textPaint.setAntiAlias(true);
+        textPaint.setColor(Color.WHITE);
+        textPaint.setTypeface(Typeface.MONOSPACE);
+        backgroundPaint.setARGB(180, 0, 0, 0);
+        backgroundPaint.setStyle(Paint.Style.FILL);
+    }
+
+    /**
+     * Draws the overlay. The canvas shouldn't be scaled or translated.
+     *
+     * @param canvas        The canvas to draw to
+     * @param screenDensity Screen density from the display metrics
+     */
+    public void draw(Canvas canvas, float screenDensity) {
+        textPaint.setTextSize(TEXT_SIZE * screenDensity);
+        float lineHeight = textPaint.getFontSpacing();
+        float padding = 4 * screenDensity;
+        int lines = 3;
+        for (int timer = 0; timer < Metrics.TIMER_NAMES.length; timer++) {
+            if (Metrics.getSampleCount(timer) > 0) lines++;
+        }
+        canvas.drawRect(0, 0, 320 * screenDensity, lines * lineHeight + 2 * padding, backgroundPaint);
+        float y = padding - textPaint.ascent();
+        // Timers (only the ones that have been used)
+        for (int timer = 0; timer < Metrics.TIMER_NAMES.length; timer++) {
+            if (Metrics.getSampleCount(timer) == 0) {
+                continue;
+            }
+            line.setLength(0);
+            line.append(Metrics.TIMER_NAMES[timer]).append(": p50 ");
+            appendDecimal(Metrics.getPercentile(timer, 50), NANOS_PER_MILLI);
+            line.append(" p95 ");
+            appendDecimal(Metrics.getPercentile(timer, 95), NANOS_PER_MILLI);
+            line.append(" p99 ");
+            appendDecimal(Metrics.getPercentile(timer, 99), NANOS_PER_MILLI);
+            line.append(" ms");
+            drawLine(canvas, padding, y);
+            y += lineHeight;
+        }
+        // Touch latency
+        line.setLength(0);
+        line.append("Touch to frame: p50 ");
+        appendDecimal(latencyTracker.getPercentile(50), MICROS_PER_MILLI);
+        line.append(" p95 ");
+        appendDecimal(latencyTracker.getPercentile(95), MICROS_PER_MILLI);
+        line.append(" p99 ");
+        appendDecimal(latencyTracker.getPercentile(99), MICROS_PER_MILLI);
+        line.append(" ms (").append(latencyTracker.getCount()).append(')');
+        drawLine(canvas, padding, y);
+        y += lineHeight;
+        // Counters
+        line.setLength(0);
+        line.append("Paths: ").append(Metrics.getCounter(Metrics.PATHS_DRAWN)).append(" drawn, ")
+                .append(Metrics.getCounter(Metrics.PATHS_CULLED)).append(" culled, ")
+                .append(Metrics.getCounter(Metrics.POINTS_SUBMITTED)).append(" points");
+        drawLine(canvas, padding, y);
+        y += lineHeight;
+        // Gauges
+        line.setLength(0);
+        line.append("History: ");
+        appendDecimal(Metrics.getGauge(Metrics.HISTORY_MEMORY), BYTES_PER_MB);
+        line.append(" MB in memory");
+        drawLine(canvas, padding, y);
+    }
+
+    /**
+     * Appends <code>value / unit</code> with two decimal places, without making a String.
+     */
+    private void appendDecimal(long value, long unit) {
+        long hundredths = value * 100 / unit;
+        line.append(hundredths / 100).append('.');
+        long fraction = hundredths % 100;
+        if (fraction < 10) {
+            line.append('0');
+        }
+        line.append(fraction);
+    }
+
+    private void drawLine(Canvas canvas, float x, float y) {
+        if (line.length() > chars.length) {
+            chars = new char[line.length() * 2];
+        }
+        line.getChars(0, line.length(), chars, 0);
+        canvas.drawText(chars, 0, line.length(), x, y, textPaint);
+    }
+}
@@ -0,0 +1,144 @@
+package io.github.pastthepixels.freepaint.Debug;
+
+import android.os.Trace;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Marks named sections of the drawing engine, both for system traces (with <code>android.os.Trace</code>, so they
+ * show up in Perfetto/systrace) and in our own ring buffer of the last <code>CAPACITY</code> sections.
+ * The ring buffer can be saved as a Chrome trace (see <code>writeJson</code>), which can be opened in
+ * <a href="https://ui.perfetto.dev">Perfetto</a> or chrome://tracing -- so a slowdown can be looked at later
+ * without having had a profiler attached.
+ * <p>
+ * Sections are constants instead of Strings so recording one doesn't allocate:
+ * <pre>
+ * long start = Tracer.begin(Tracer.FINALISE);
+ * ...
+ * Tracer.end(Tracer.FINALISE, start);
+ * </pre>
+ */
+public final class Tracer {
+    public static final int DRAW = 0;
+    public static final int TOUCH = 1;
+    public static final int FINALISE = 2;
+    public static final int SIMPLIFY = 3;
+    public static final int CACHE_PATH = 4;
+    public static final int ERASE = 5;
+    public static final int SELECT_PATHS = 6;
+    public static final int CREATE_SVG = 7;
+    public static final int PARSE_SVG = 8;
+    public static final String[] SECTION_NAMES = {
+            "DrawCanvas.onDraw",
+            "DrawCanvas.onTouchEvent",
+            "DrawPath.finalise",
+            "DrawPath.simplify",
+            "DrawPath.cachePath",
+            "EraserTool.eraseCurrentPath",
+            "SelectionTool.selectPaths",
+            "SVG.createSVG",
+            "SVG.parseFile"
+    };
+
+    /**
+     * Number of sections the ring buffer keeps
+     */
+    public static final int CAPACITY = 8192;
+
+    private static final Object lock = new Object();
+
+    // The ring buffer
+    private static final int[] sections = new int[CAPACITY];
+    private static final long[] starts = new long[CAPACITY];
+    private static final long[] durations = new long[CAPACITY];
+    private static final long[] threads = new long[CAPACITY];
+    private static int next = 0;
+    private static int count = 0;
+
+    private Tracer() {
+    }
+
+    /**
+     * Starts a section. Every <code>begin</code> has to be matched by an <code>end</code> on the same thread,
+     * in reverse order of <code>begin</code>s.
+     *
+     * @param section Which section (ex. <code>Tracer.DRAW</code>)
+     * @return The start time, to pass to <code>end</code>
+     */
+    public static long begin(int section) {
+        Trace.beginSection(SECTION_NAMES[section]);
+        return System.nanoTime();
+    }
+
+    /**
+     * Ends a section and adds it to the ring buffer.
+     *
+     * @param section Which section (the same one given to <code>begin</code>)
+     * @param start   What <code>begin</code> returned
+     */
+    public static void end(int section, long start) {
+        long duration = System.nanoTime() - start;
+        Trace.endSection();
+        record(section, start, duration, Thread.currentThread().getId());
+    }
+
+    /**
+     * Adds a section to the ring buffer, overwriting the oldest one if it's full.
+     */
+    static void record(int section, long start, long duration, long thread) {
+        synchronized (lock) {
+            sections[next] = section;
+            starts[next] = start;
+            durations[next] = duration;
+            threads[next] = thread;
+            next = (next + 1) % CAPACITY;
+            count = Math.min(count + 1, CAPACITY);
+        }
+    }
+
+    /**
+     * Throws away every section in the ring buffer.
+     */
+    public static void clear() {
+        synchronized (lock) {
+            next = 0;
+            count = 0;
+        }
+    }
+
+    /**
+     * Writes every section in the ring buffer (oldest first) in the Chrome trace event format, as "complete" events.
+     *
+     * @param writer Where to write the JSON to (this doesn't close it)
+     * @param pid    Process ID to put in each event
+     * @throws IOException If the writer can't be written to
+     */
+    public static void writeJson(Writer writer, int pid) throws IOException {
+        synchronized (lock) {
+            writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+            int first = (next - count + CAPACITY) % CAPACITY;
+            for (int i = 0; i < count; i++) {
+                int event = (first + i) % CAPACITY;
+                if (i > 0) {
+                    writer.write(',');
+                }
+                // Timestamps are in microseconds
+                writer.write("\n{\"name\":\"" + SECTION_NAMES[sections[event]] + "\",\"cat\":\"freepaint\",\"ph\":\"X\""
+                        + ",\"ts\":" + microseconds(starts[event])
+                        + ",\"dur\":" + microseconds(durations[event])
+                        + ",\"pid\":" + pid
+                        + ",\"tid\":" + threads[event] + "}");
+            }
+            writer.write("\n]}\n");
+        }
+    }
+
+    /**
+     * Formats nanoseconds as microseconds with three decimal places (always with ASCII digits, for JSON)
+     */
+    private static String microseconds(long nanos) {
+        return nanos / 1000 + "." + String.format(Locale.ROOT, "%03d", nanos % 1000);
+    }
+}
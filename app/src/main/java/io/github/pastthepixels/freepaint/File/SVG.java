@@ -2,6 +2,7 @@ package io.github.pastthepixels.freepaint.File;
 
 import android.annotation.SuppressLint;
 import android.graphics.Color;
+import android.graphics.Matrix;
 
 import androidx.annotation.NonNull;
 
@@ -19,18 +20,29 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 import dev.romainguy.graphics.path.Svg;
+import io.github.pastthepixels.freepaint.Debug.Metrics;
+import io.github.pastthepixels.freepaint.Debug.Tracer;
 import io.github.pastthepixels.freepaint.Graphics.DrawAppearance;
 import io.github.pastthepixels.freepaint.Graphics.DrawCanvas;
 import io.github.pastthepixels.freepaint.Graphics.DrawPath;
 import io.github.pastthepixels.freepaint.Graphics.Point;
+import io.github.pastthepixels.freepaint.Graphics.PointBuffer;
+import io.github.pastthepixels.freepaint.History.PersistentVector;
 
 public class SVG {
+    /**
+     * One function in a <code>transform</code> attribute, ex. "rotate(45, 10 10)" (name, then arguments)
+     */
+    private static final Pattern TRANSFORM_FUNCTION = Pattern.compile("(\\w+)\\s*\\(([^)]*)\\)");
+
     private final DrawCanvas canvas;
 
     private final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
@@ -51,6 +63,8 @@ public class SVG {
      */
     @SuppressLint("DefaultLocale")
     public void createSVG() {
+        long start = Metrics.start();
+        long traceStart = Tracer.begin(Tracer.CREATE_SVG);
         this.data = "";
         this.data += "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n";
         this.data += String.format(
@@ -69,6 +83,8 @@ public class SVG {
         // Closes the tag. We are done.
         this.data += "\n</svg>";
         System.out.println(this.data);
+        Tracer.end(Tracer.CREATE_SVG, traceStart);
+        Metrics.stop(Metrics.SVG_IO, start);
     }
 
     /**
@@ -79,8 +95,10 @@ public class SVG {
      * @throws IOException In case something goes wrong from <code>OutputStream.write()</code>
      */
     public void writeFile(OutputStream stream) throws IOException {
+        long start = Metrics.start();
         stream.write(data.getBytes());
         stream.close();
+        Metrics.stop(Metrics.SVG_IO, start);
     }
 
     /**
@@ -89,10 +107,12 @@ public class SVG {
      * @param stream The InputStream to parse. The method is designed such that it would be passed from a DrawCanvas with <code>DrawCanvas.loadFile()</code>
      */
     public void loadFile(InputStream stream) {
+        long start = Metrics.start();
         parseFile(
                 (new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8)))
                         .lines().collect(Collectors.joining("\n"))
         );
+        Metrics.stop(Metrics.SVG_IO, start);
     }
 
     /**
@@ -119,6 +139,15 @@ public class SVG {
             data.append(String.format("stroke-opacity=\"%f\" ", DrawAppearance.getColorAlpha(path.appearance.stroke)));
         data.append(String.format("stroke-width=\"%s\" ", path.appearance.strokeSize));
         data.append("stroke-linecap=\"round\" ");
+        // Step 3. Add the transform (see DrawPath.setTransform). SVG matrices go (a b c d e f) for
+        // x' = ax + cy + e and y' = bx + dy + f.
+        if (path.getTransform() != null) {
+            float[] values = new float[9];
+            path.getTransform().getValues(values);
+            data.append(String.format("transform=\"matrix(%f %f %f %f %f %f)\" ",
+                    values[Matrix.MSCALE_X], values[Matrix.MSKEW_Y], values[Matrix.MSKEW_X],
+                    values[Matrix.MSCALE_Y], values[Matrix.MTRANS_X], values[Matrix.MTRANS_Y]));
+        }
         // Done
         this.data += data + "/>";
     }
@@ -135,6 +164,18 @@ public class SVG {
      * @param data The SVG as a String (ex. <code>"\<svg\>\<path\/\>\<\/\svg\>"</code>
      */
     public void parseFile(String data) {
+        long start = Tracer.begin(Tracer.PARSE_SVG);
+        try {
+            parseDocument(data);
+        } finally {
+            Tracer.end(Tracer.PARSE_SVG, start);
+        }
+    }
+
+    /**
+     * Does the work of parseFile (split out so that parseFile can trace it even if it throws).
+     */
+    private void parseDocument(String data) {
         System.out.println("**READING**");
         System.out.println(data);
 
@@ -155,7 +196,7 @@ public class SVG {
             canvas.documentColor = Color.parseColor(document.getDocumentElement().getAttribute("viewport-fill"));
         }
         // Add paths
-        canvas.paths.clear();
+        ArrayList<DrawPath> paths = new ArrayList<>();
         NodeList nodes = document.getElementsByTagName("path");
         for (int i = 0; i < nodes.getLength(); i++) {
             Node node = nodes.item(i);
@@ -165,7 +206,7 @@ public class SVG {
                 path.appearance.stroke = path.appearance.fill = -1;
                 path.isClosed = element.getAttribute("d").toUpperCase().contains("Z");
                 // Points
-                path.points = parsePath(element.getAttribute("d"));
+                path.points = new PointBuffer(parsePath(element.getAttribute("d")));
                 // Fill/stroke
                 float fillOpacity = element.hasAttribute("fill-opacity") ? Float.parseFloat(element.getAttribute("fill-opacity")) : 1;
                 float strokeOpacity = element.hasAttribute("stroke-opacity") ? Float.parseFloat(element.getAttribute("stroke-opacity")) : 1;
@@ -181,11 +222,16 @@ public class SVG {
                 if (element.hasAttribute("stroke-width")) {
                     path.appearance.strokeSize = Integer.parseInt(element.getAttribute("stroke-width"));
                 }
+                // Transform
+                if (element.hasAttribute("transform")) {
+                    path.setTransform(parseTransform(element.getAttribute("transform")));
+                }
                 // Done!!
                 path.cachePath();
-                canvas.paths.add(path);
+                paths.add(path);
             }
         }
+        canvas.paths = PersistentVector.from(paths);
         // Invalidate!
         canvas.invalidate();
     }
@@ -343,6 +389,59 @@ public class SVG {
         return points;
     }
 
+    /**
+     * Parses a <code>transform</code> attribute (a list of functions like "translate(10 20) rotate(45)") into a
+     * Matrix. Functions we don't know are skipped.
+     *
+     * @param transform The "transform" attribute of an SVG element.
+     * @return The transform as a Matrix
+     */
+    public Matrix parseTransform(@NonNull String transform) {
+        Matrix matrix = new Matrix();
+        Matcher matcher = TRANSFORM_FUNCTION.matcher(transform);
+        while (matcher.find()) {
+            String arguments = matcher.group(2).strip();
+            if (arguments.isEmpty()) {
+                continue;
+            }
+            String[] strings = arguments.split("[\\s,]+");
+            float[] numbers = new float[strings.length];
+            for (int i = 0; i < strings.length; i++) {
+                numbers[i] = Float.parseFloat(strings[i]);
+            }
+            // Functions are applied right to left, so each one goes before the ones we've already read
+            switch (matcher.group(1)) {
+                case "matrix":
+                    if (numbers.length == 6) {
+                        Matrix function = new Matrix();
+                        function.setValues(new float[]{numbers[0], numbers[2], numbers[4], numbers[1], numbers[3], numbers[5], 0, 0, 1});
+                        matrix.preConcat(function);
+                    }
+                    break;
+                case "translate":
+                    matrix.preTranslate(numbers[0], numbers.length > 1 ? numbers[1] : 0);
+                    break;
+                case "scale":
+                    matrix.preScale(numbers[0], numbers.length > 1 ? numbers[1] : numbers[0]);
+                    break;
+                case "rotate":
+                    if (numbers.length == 3) {
+                        matrix.preRotate(numbers[0], numbers[1], numbers[2]);
+                    } else {
+                        matrix.preRotate(numbers[0]);
+                    }
+                    break;
+                case "skewX":
+                    matrix.preSkew((float) Math.tan(Math.toRadians(numbers[0])), 0);
+                    break;
+                case "skewY":
+                    matrix.preSkew(0, (float) Math.tan(Math.toRadians(numbers[0])));
+                    break;
+            }
+        }
+        return matrix;
+    }
+
     /**
      * Converts an SVG command, case insensitive (ex. moveto "M", lineto "L") to a corresponding Point.COMMANDS command.
      *
@@ -0,0 +1,342 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+import java.util.Arrays;
+
+import io.github.pastthepixels.freepaint.Utils;
+
+/**
+ * Fits as few cubic Bézier curves as it can to a stroke, using Philip Schneider's algorithm ("An Algorithm for
+ * Automatically Fitting Digitized Curves", Graphics Gems, 1990).
+ * <p>
+ * Each run of points is fit with one cubic by least squares (with the tangents at its ends fixed, so neighbouring
+ * curves join smoothly). If some point is further than the tolerance from the curve, we first try moving where each
+ * point lands on the curve (Newton-Raphson) and refitting, and if that doesn't help the run is split at its worst
+ * point and each half is fit again. Sharp turns (like the corner heuristic in <code>DrawPath.finalise</code>) are
+ * split on beforehand and left as corners.
+ * <p>
+ * Like <code>Simplifier</code>, runs still to be fit are kept on an explicit stack, and every buffer is reused
+ * between calls -- keep one CurveFitter around per thread.
+ */
+public class CurveFitter {
+    /**
+     * Tolerance to use when none is given, in document pixels
+     */
+    public static final double DEFAULT_TOLERANCE = 1;
+
+    /**
+     * Points where the stroke turns by at least this much (in radians) are kept as corners
+     */
+    private static final double CORNER_ANGLE = Math.PI / 2;
+
+    /**
+     * How many times to try reparameterizing before splitting a run
+     */
+    private static final int MAX_ITERATIONS = 4;
+
+    // Input points, without repeated points, and the index of the point each one came from
+    private float[] x = new float[64];
+    private float[] y = new float[64];
+    private int[] source = new int[64];
+    private int count;
+
+    // Parameter (0-1 along the curve) of each point in the run being fit
+    private double[] u = new double[64];
+    // The curve being fit: start, first control point, second control point, end
+    private final double[] curve = new double[8];
+    private int splitPoint;
+
+    // Runs still to be fit: first/last index, and the tangent at each end
+    private int[] runs = new int[32];
+    private float[] tangents = new float[64];
+
+    /**
+     * Fits curves to a list of points. Points with the "move" command start a new curve.
+     *
+     * @param points    The points to fit (aren't changed)
+     * @param tolerance How far (in document pixels) the curves can be from any point
+     * @param out       Cleared, then filled with the ends of each curve, with handles set to its control points
+     */
+    public void fit(PointBuffer points, double tolerance, PointBuffer out) {
+        out.clear();
+        double error = tolerance * tolerance;
+        int start = 0;
+        for (int i = 1; i <= points.size(); i++) {
+            if (i == points.size() || points.getCommand(i) == Point.COMMANDS.move) {
+                fitSubpath(points, start, i, error, out);
+                start = i;
+            }
+        }
+    }
+
+    /**
+     * Fits one subpath (points from <code>start</code> up to, but not including, <code>end</code>)
+     */
+    private void fitSubpath(PointBuffer points, int start, int end, double error, PointBuffer out) {
+        load(points, start, end);
+        appendPoint(points, 0, out);
+        // Fits each run between corners on its own
+        int runStart = 0;
+        for (int i = 1; i < count; i++) {
+            if (i == count - 1 || isCorner(i)) {
+                fitRun(points, runStart, i, error, out);
+                runStart = i;
+            }
+        }
+    }
+
+    /**
+     * Copies points into <code>x</code>/<code>y</code>, skipping points that are on top of the one before (which
+     * would give us tangents of length 0).
+     */
+    private void load(PointBuffer points, int start, int end) {
+        int length = end - start;
+        if (x.length < length) {
+            int capacity = Math.max(length, x.length * 2);
+            x = new float[capacity];
+            y = new float[capacity];
+            source = new int[capacity];
+            u = new double[capacity];
+        }
+        count = 0;
+        for (int i = start; i < end; i++) {
+            if (count > 0 && points.getX(i) == x[count - 1] && points.getY(i) == y[count - 1]) {
+                continue;
+            }
+            x[count] = points.getX(i);
+            y[count] = points.getY(i);
+            source[count] = i;
+            count++;
+        }
+    }
+
+    private boolean isCorner(int i) {
+        double angle = Utils.angleBetweenVectors(x[i] - x[i - 1], y[i] - y[i - 1], x[i + 1] - x[i], y[i + 1] - y[i]);
+        return angle >= CORNER_ANGLE;
+    }
+
+    /**
+     * Fits curves to the points from <code>first</code> to <code>last</code> (inclusive). The point at
+     * <code>first</code> has to be the last one in <code>out</code> already.
+     */
+    private void fitRun(PointBuffer points, int first, int last, double error, PointBuffer out) {
+        int stackSize = 0;
+        pushRun(stackSize++, first, last,
+                directionX(first, first + 1), directionY(first, first + 1),
+                directionX(last, last - 1), directionY(last, last - 1));
+        while (stackSize > 0) {
+            stackSize--;
+            first = runs[stackSize * 2];
+            last = runs[stackSize * 2 + 1];
+            float tangent1X = tangents[stackSize * 4];
+            float tangent1Y = tangents[stackSize * 4 + 1];
+            float tangent2X = tangents[stackSize * 4 + 2];
+            float tangent2Y = tangents[stackSize * 4 + 3];
+            if (fitCubic(first, last, tangent1X, tangent1Y, tangent2X, tangent2Y, error)) {
+                appendCurve(points, last, out);
+                continue;
+            }
+            // Splits at the worst point, with the same tangent on both sides so the curves join smoothly.
+            // The second half is pushed first so the first half is fit (and added to out) first.
+            int split = splitPoint;
+            float centerX = directionX(split + 1, split - 1);
+            float centerY = directionY(split + 1, split - 1);
+            pushRun(stackSize++, split, last, -centerX, -centerY, tangent2X, tangent2Y);
+            pushRun(stackSize++, first, split, tangent1X, tangent1Y, centerX, centerY);
+        }
+    }
+
+    /**
+     * Tries to fit one curve to a run, leaving it in <code>curve</code>.
+     *
+     * @return Whether every point is close enough to the curve. If not, <code>splitPoint</code> is the worst one.
+     */
+    private boolean fitCubic(int first, int last, float tangent1X, float tangent1Y, float tangent2X, float tangent2Y, double error) {
+        if (last - first == 1) {
+            // Two points: handles a third of the way along the tangents
+            double distance = Math.hypot(x[last] - x[first], y[last] - y[first]) / 3;
+            setCurve(first, last, tangent1X, tangent1Y, tangent2X, tangent2Y, distance, distance);
+            return true;
+        }
+        chordLengthParameterize(first, last);
+        generateBezier(first, last, tangent1X, tangent1Y, tangent2X, tangent2Y);
+        double maxError = computeMaxError(first, last);
+        if (maxError < error) {
+            return true;
+        }
+        // If we're close, moving the points along the curve might be enough
+        if (maxError < error * 4) {
+            for (int i = 0; i < MAX_ITERATIONS; i++) {
+                reparameterize(first, last);
+                generateBezier(first, last, tangent1X, tangent1Y, tangent2X, tangent2Y);
+                maxError = computeMaxError(first, last);
+                if (maxError < error) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets each point's parameter to how far it is along the polyline
+     */
+    private void chordLengthParameterize(int first, int last) {
+        u[first] = 0;
+        for (int i = first + 1; i <= last; i++) {
+            u[i] = u[i - 1] + Math.hypot(x[i] - x[i - 1], y[i] - y[i - 1]);
+        }
+        for (int i = first + 1; i <= last; i++) {
+            u[i] /= u[last];
+        }
+    }
+
+    /**
+     * Finds the curve (with fixed end points and tangents) that fits the points best by least squares:
+     * the only unknowns are how long each handle is, so this is a 2x2 linear system.
+     */
+    private void generateBezier(int first, int last, float tangent1X, float tangent1Y, float tangent2X, float tangent2Y) {
+        double c00 = 0, c01 = 0, c11 = 0, x0 = 0, x1 = 0;
+        for (int i = first; i <= last; i++) {
+            double t = u[i];
+            double mt = 1 - t;
+            double b0 = mt * mt * mt;
+            double b1 = 3 * t * mt * mt;
+            double b2 = 3 * t * t * mt;
+            double b3 = t * t * t;
+            double a0x = tangent1X * b1;
+            double a0y = tangent1Y * b1;
+            double a1x = tangent2X * b2;
+            double a1y = tangent2Y * b2;
+            c00 += a0x * a0x + a0y * a0y;
+            c01 += a0x * a1x + a0y * a1y;
+            c11 += a1x * a1x + a1y * a1y;
+            double tmpX = x[i] - (x[first] * (b0 + b1) + x[last] * (b2 + b3));
+            double tmpY = y[i] - (y[first] * (b0 + b1) + y[last] * (b2 + b3));
+            x0 += a0x * tmpX + a0y * tmpY;
+            x1 += a1x * tmpX + a1y * tmpY;
+        }
+        double determinant = c00 * c11 - c01 * c01;
+        double alpha1 = determinant == 0 ? 0 : (x0 * c11 - x1 * c01) / determinant;
+        double alpha2 = determinant == 0 ? 0 : (c00 * x1 - c01 * x0) / determinant;
+        // If a handle would be tiny or backwards, fall back to a third of the distance between the ends
+        double length = Math.hypot(x[last] - x[first], y[last] - y[first]);
+        if (alpha1 < length * 1e-6 || alpha2 < length * 1e-6) {
+            alpha1 = alpha2 = length / 3;
+        }
+        setCurve(first, last, tangent1X, tangent1Y, tangent2X, tangent2Y, alpha1, alpha2);
+    }
+
+    private void setCurve(int first, int last, float tangent1X, float tangent1Y, float tangent2X, float tangent2Y, double alpha1, double alpha2) {
+        curve[0] = x[first];
+        curve[1] = y[first];
+        curve[2] = x[first] + tangent1X * alpha1;
+        curve[3] = y[first] + tangent1Y * alpha1;
+        curve[4] = x[last] + tangent2X * alpha2;
+        curve[5] = y[last] + tangent2Y * alpha2;
+        curve[6] = x[last];
+        curve[7] = y[last];
+    }
+
+    /**
+     * Finds the point furthest from where it lands on the curve.
+     *
+     * @return The squared distance to that point (its index goes in <code>splitPoint</code>)
+     */
+    private double computeMaxError(int first, int last) {
+        double maxError = 0;
+        splitPoint = (first + last) / 2;
+        for (int i = first + 1; i < last; i++) {
+            double dx = evaluate(curve, 0, u[i]) - x[i];
+            double dy = evaluate(curve, 1, u[i]) - y[i];
+            double error = dx * dx + dy * dy;
+            if (error >= maxError) {
+                maxError = error;
+                splitPoint = i;
+            }
+        }
+        return maxError;
+    }
+
+    /**
+     * Moves each point's parameter to the closest spot on the curve, with one step of Newton-Raphson
+     */
+    private void reparameterize(int first, int last) {
+        for (int i = first + 1; i < last; i++) {
+            double t = u[i];
+            double dx = evaluate(curve, 0, t) - x[i];
+            double dy = evaluate(curve, 1, t) - y[i];
+            double d1x = derivative(0, t);
+            double d1y = derivative(1, t);
+            double d2x = secondDerivative(0, t);
+            double d2y = secondDerivative(1, t);
+            double denominator = d1x * d1x + d1y * d1y + dx * d2x + dy * d2y;
+            if (denominator != 0) {
+                u[i] = Math.max(0, Math.min(1, t - (dx * d1x + dy * d1y) / denominator));
+            }
+        }
+    }
+
+    /**
+     * @param axis 0 for x, 1 for y
+     */
+    private static double evaluate(double[] curve, int axis, double t) {
+        double mt = 1 - t;
+        return mt * mt * mt * curve[axis] + 3 * mt * mt * t * curve[2 + axis] + 3 * mt * t * t * curve[4 + axis] + t * t * t * curve[6 + axis];
+    }
+
+    private double derivative(int axis, double t) {
+        double mt = 1 - t;
+        return 3 * (mt * mt * (curve[2 + axis] - curve[axis])
+                + 2 * mt * t * (curve[4 + axis] - curve[2 + axis])
+                + t * t * (curve[6 + axis] - curve[4 + axis]));
+    }
+
+    private double secondDerivative(int axis, double t) {
+        return 6 * ((1 - t) * (curve[4 + axis] - 2 * curve[2 + axis] + curve[axis])
+                + t * (curve[6 + axis] - 2 * curve[4 + axis] + curve[2 + axis]));
+    }
+
+    /**
+     * x component of the unit vector from point <code>from</code> to point <code>to</code>
+     */
+    private float directionX(int from, int to) {
+        double length = Math.hypot(x[to] - x[from], y[to] - y[from]);
+        return length == 0 ? 0 : (float) ((x[to] - x[from]) / length);
+    }
+
+    /**
+     * y component of the unit vector from point <code>from</code> to point <code>to</code>
+     */
+    private float directionY(int from, int to) {
+        double length = Math.hypot(x[to] - x[from], y[to] - y[from]);
+        return length == 0 ? 0 : (float) ((y[to] - y[from]) / length);
+    }
+
+    private void pushRun(int index, int first, int last, float tangent1X, float tangent1Y, float tangent2X, float tangent2Y) {
+        if (runs.length < (index + 1) * 2) {
+            runs = Arrays.copyOf(runs, runs.length * 2);
+            tangents = Arrays.copyOf(tangents, tangents.length * 2);
+        }
+        runs[index * 2] = first;
+        runs[index * 2 + 1] = last;
+        tangents[index * 4] = tangent1X;
+        tangents[index * 4 + 1] = tangent1Y;
+        tangents[index * 4 + 2] = tangent2X;
+        tangents[index * 4 + 3] = tangent2Y;
+    }
+
+    private void appendPoint(PointBuffer points, int index, PointBuffer out) {
+        int from = source[index];
+        out.add(x[index], y[index], points.getCommand(from), points.getColor(from));
+    }
+
+    /**
+     * Adds the end of <code>curve</code> to <code>out</code>, and sets the handles between it and the last point
+     */
+    private void appendCurve(PointBuffer points, int last, PointBuffer out) {
+        int previous = out.size() - 1;
+        out.setRightHandle(previous, (float) (curve[2] - curve[0]), (float) (curve[3] - curve[1]));
+        appendPoint(points, last, out);
+        out.setLeftHandle(previous + 1, (float) (curve[4] - curve[6]), (float) (curve[5] - curve[7]));
+    }
+}
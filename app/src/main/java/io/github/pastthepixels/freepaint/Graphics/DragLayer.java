@@ -0,0 +1,158 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.RectF;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Paths that are being dragged around (ex. by the selection tool), drawn as one picture that gets moved instead of
+ * moving every path on every touch event. When the drag starts, the paths are rasterized into a bitmap at the
+ * current zoom level, so each frame draws one bitmap no matter how much is selected. The paths themselves are only
+ * moved once the drag ends.
+ * <p>
+ * If the bitmap would be too big (ex. zoomed in on a big selection), the paths' cached Paths are drawn with a
+ * translation instead, which still doesn't rebuild anything.
+ * <p>
+ * A DragLayer is never changed after it's made (moving it makes a copy that shares the bitmap), so it can be drawn
+ * from the render thread. The only exception is <code>release</code>, which has to be called once the drag is over
+ * so the bitmap doesn't sit around until it's garbage collected.
+ */
+public class DragLayer {
+    /**
+     * Biggest bitmap we'll make, in pixels (16 MB)
+     */
+    private static final int MAX_PIXELS = 4096 * 1024;
+
+    /**
+     * Extra pixels around the bitmap for antialiasing
+     */
+    private static final int PADDING = 2;
+
+    /**
+     * The paths, or null if we drew them to a bitmap
+     */
+    private final List<DrawPath> paths;
+    /**
+     * Also locked while drawing or recycling it, since that can happen on different threads
+     */
+    private final Bitmap bitmap;
+    /**
+     * Where the top left of the bitmap is, in scaled document space (document coordinates times <code>scale</code>)
+     */
+    private final int bitmapLeft;
+    private final int bitmapTop;
+    /**
+     * The scale factor the bitmap was drawn at
+     */
+    private final float scale;
+    /**
+     * Bounds of the paths before they were moved, in document coordinates
+     */
+    private final RectF bounds;
+    /**
+     * How far the paths have been dragged, in document coordinates
+     */
+    private final float offsetX;
+    private final float offsetY;
+
+    private DragLayer(List<DrawPath> paths, Bitmap bitmap, int bitmapLeft, int bitmapTop, float scale, RectF bounds,
+                      float offsetX, float offsetY) {
+        this.paths = paths;
+        this.bitmap = bitmap;
+        this.bitmapLeft = bitmapLeft;
+        this.bitmapTop = bitmapTop;
+        this.scale = scale;
+        this.bounds = bounds;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+    }
+
+    /**
+     * Starts dragging some paths.
+     *
+     * @param paths         The paths to drag (these should be paths from the document, which are never changed)
+     * @param scale         The scale factor of the canvas
+     * @param screenDensity Passed along to <code>DrawPath.draw</code>
+     * @return A DragLayer that hasn't been moved yet
+     */
+    public static DragLayer capture(List<DrawPath> paths, float scale, float screenDensity) {
+        RectF bounds = new RectF();
+        for (DrawPath path : paths) {
+            bounds.union(path.getBounds());
+        }
+        int left = (int) Math.floor(bounds.left * scale) - PADDING;
+        int top = (int) Math.floor(bounds.top * scale) - PADDING;
+        int width = (int) Math.ceil(bounds.right * scale) + PADDING - left;
+        int height = (int) Math.ceil(bounds.bottom * scale) + PADDING - top;
+        if (bounds.isEmpty() || (long) width * height > MAX_PIXELS) {
+            return new DragLayer(new ArrayList<>(paths), null, 0, 0, scale, bounds, 0, 0);
+        }
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.translate(-left, -top);
+        canvas.scale(scale, scale);
+        for (DrawPath path : paths) {
+            path.draw(canvas, screenDensity, scale);
+        }
+        return new DragLayer(null, bitmap, left, top, scale, bounds, 0, 0);
+    }
+
+    /**
+     * @param x How far the paths have been dragged in total, in document coordinates
+     * @param y How far the paths have been dragged in total, in document coordinates
+     * @return A copy of this DragLayer that's been dragged to somewhere else
+     */
+    public DragLayer moved(float x, float y) {
+        return new DragLayer(paths, bitmap, bitmapLeft, bitmapTop, scale, bounds, x, y);
+    }
+
+    /**
+     * Frees the bitmap, for this DragLayer and every copy of it. If the render thread is drawing it right now, this
+     * waits for it to finish; after this, drawing it does nothing.
+     */
+    public void release() {
+        if (bitmap != null) {
+            synchronized (bitmap) {
+                bitmap.recycle();
+            }
+        }
+    }
+
+    /**
+     * Gets where the paths are drawn now, ex. to know what part of the screen to redraw.
+     *
+     * @param out Set to the bounds, in document coordinates
+     */
+    public void getBounds(RectF out) {
+        out.set(bounds);
+        out.offset(offsetX, offsetY);
+    }
+
+    /**
+     * Draws the dragged paths.
+     *
+     * @param canvas        The canvas to draw to, already scaled/translated to document coordinates
+     * @param screenDensity Passed along to <code>DrawPath.draw</code>
+     * @param scaleFactor   The scale factor of the canvas
+     */
+    public void draw(Canvas canvas, float screenDensity, float scaleFactor) {
+        canvas.save();
+        canvas.translate(offsetX, offsetY);
+        if (bitmap != null) {
+            canvas.scale(1 / scale, 1 / scale);
+            synchronized (bitmap) {
+                if (!bitmap.isRecycled()) {
+                    canvas.drawBitmap(bitmap, bitmapLeft, bitmapTop, null);
+                }
+            }
+        } else {
+            for (DrawPath path : paths) {
+                path.draw(canvas, screenDensity, scaleFactor);
+            }
+        }
+        canvas.restore();
+    }
+}
@@ -18,6 +18,8 @@ public class DrawAppearance {
     public int strokeSize = 5;
     // If this is set to true, stroke size is measured in dp instead of px
     public boolean useDP = false;
+    // Paints for drawing paths with this appearance, made by getFillPaint/getStrokePaint
+    private PaintCache paintCache;
 
     // Constructor with just stroke/fill (integer colors)
     public DrawAppearance(int stroke, int fill) {
@@ -89,6 +91,39 @@ public class DrawAppearance {
         }
     }
 
+    /*
+     * Gets a Paint for filling paths with this appearance. Don't change it -- it's reused for every
+     * draw until this appearance (or for dp/dashed appearances, the dp correction) changes.
+     * @param dpCorrection Screen density divided by the scale factor
+     */
+    public Paint getFillPaint(float dpCorrection) {
+        return getPaintCache(dpCorrection).fillPaint;
+    }
+
+    /*
+     * Gets a Paint for stroking paths with this appearance. Like getFillPaint, don't change it.
+     * @param dpCorrection Screen density divided by the scale factor
+     */
+    public Paint getStrokePaint(float dpCorrection) {
+        return getPaintCache(dpCorrection).strokePaint;
+    }
+
+    /*
+     * Returns the cached Paints, or makes new ones if anything they depend on has changed.
+     * A new PaintCache is made instead of changing the old one, since paths can be drawn from a render thread too.
+     */
+    private PaintCache getPaintCache(float dpCorrection) {
+        PaintCache cache = paintCache;
+        // Only dp-sized and dashed appearances change with the dp correction
+        if (!useDP && effect == EFFECTS.none) {
+            dpCorrection = 1;
+        }
+        if (cache == null || !cache.matches(this, dpCorrection)) {
+            cache = paintCache = new PaintCache(this, dpCorrection);
+        }
+        return cache;
+    }
+
     /*
      * Creates a new DrawAppearance instance with the same values as the current one.
      * @return The copied DrawAppearance.
@@ -99,6 +134,40 @@ public class DrawAppearance {
         return new DrawAppearance(stroke, fill, strokeSize);
     }
 
+    /*
+     * Fill/stroke Paints, and everything they were made from
+     */
+    private static final class PaintCache {
+        final int stroke;
+        final int fill;
+        final int strokeSize;
+        final boolean useDP;
+        final EFFECTS effect;
+        final float dpCorrection;
+        final Paint fillPaint = new Paint();
+        final Paint strokePaint = new Paint();
+
+        PaintCache(DrawAppearance appearance, float dpCorrection) {
+            this.stroke = appearance.stroke;
+            this.fill = appearance.fill;
+            this.strokeSize = appearance.strokeSize;
+            this.useDP = appearance.useDP;
+            this.effect = appearance.effect;
+            this.dpCorrection = dpCorrection;
+            appearance.initialisePaint(fillPaint, dpCorrection);
+            fillPaint.setColor(fill);
+            fillPaint.setStyle(Paint.Style.FILL);
+            appearance.initialisePaint(strokePaint, dpCorrection);
+            strokePaint.setColor(stroke);
+            strokePaint.setStyle(Paint.Style.STROKE);
+        }
+
+        boolean matches(DrawAppearance appearance, float dpCorrection) {
+            return stroke == appearance.stroke && fill == appearance.fill && strokeSize == appearance.strokeSize
+                    && useDP == appearance.useDP && effect == appearance.effect && this.dpCorrection == dpCorrection;
+        }
+    }
+
     // Basic implementation of special FX
     public enum EFFECTS {none, dashed}
 }
@@ -7,8 +7,13 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
 import android.net.Uri;
+import android.os.SystemClock;
 import android.util.AttributeSet;
+import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
 
@@ -17,12 +22,20 @@ import androidx.preference.PreferenceManager;
 
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.Objects;
 
+import io.github.pastthepixels.freepaint.Debug.LatencyTracker;
+import io.github.pastthepixels.freepaint.Debug.Metrics;
+import io.github.pastthepixels.freepaint.Debug.PerformanceOverlay;
+import io.github.pastthepixels.freepaint.Debug.Tracer;
 import io.github.pastthepixels.freepaint.File.SVG;
+import io.github.pastthepixels.freepaint.History.CommandHistory;
+import io.github.pastthepixels.freepaint.History.HistoryFile;
+import io.github.pastthepixels.freepaint.History.LoadDocumentCommand;
+import io.github.pastthepixels.freepaint.History.PersistentVector;
 import io.github.pastthepixels.freepaint.MainActivity;
 import io.github.pastthepixels.freepaint.Tools.EraserTool;
 import io.github.pastthepixels.freepaint.Tools.PaintTool;
@@ -33,25 +46,58 @@ import io.github.pastthepixels.freepaint.Tools.Tool;
 public final class DrawCanvas extends View {
 
     public final Paint paint = new Paint();
-    // Stores previous "versions" of DrawCanvas.paths you can restore
-    // You can move back and forth between this, but every time you create a new change
-    // it removes everything after the current index (solving the grandfather paradox, btw)
-    public final ArrayList<LinkedList<DrawPath>> versions = new ArrayList<>();
-    public final int MAX_VERSIONS = 256;
+    // Stores every change made to DrawCanvas.paths so that you can undo/redo them
+    public final CommandHistory history;
     public final Point documentSize = new Point(0, 0);
     private final PaintTool paintTool = new PaintTool(this);
     private final EraserTool eraserTool = new EraserTool(this);
     private final PanTool panTool = new PanTool(this);
     private final SelectionTool selectionTool = new SelectionTool(this);
     private final SVG svgHelper = new SVG(this);
-    public LinkedList<DrawPath> paths = new LinkedList<>();
+    // Rasterized copy of the document at the current zoom level, so we don't redraw every path every frame
+    private final TileCache tileCache = new TileCache();
+    // Finds paths by where they are, so we only have to look at paths on the screen/under the finger
+    private final SpatialIndex spatialIndex = new SpatialIndex();
+    // Draws the points/handles of tool paths all at once
+    private final PointOverlay pointOverlay = new PointOverlay();
+    // Draws paths in the document as highlighted for tools that want it (see Tool.highlightsPaths)
+    private final PathHighlighter pathHighlighter = new PathHighlighter();
+    // Part of the document that's on the screen, used to skip drawing paths that aren't
+    private final RectF viewport = new RectF();
+    // Part of the screen that tools changed during the current touch event (see invalidateCanvasRegion)
+    private final Rect dirtyRegion = new Rect();
+    // Extra space around dirty regions for antialiasing and dp-sized strokes, in dp
+    private static final float DIRTY_REGION_PADDING = 4;
+    // Every path in the document. This is never changed in place -- changing it gives you a new vector,
+    // which is what lets old versions stick around in DrawCanvas.history for cheap.
+    public PersistentVector<DrawPath> paths = PersistentVector.empty();
     public int documentColor = Color.WHITE;
-    private int version_index = -1;
     private TOOLS tool = TOOLS.none;
 
     // Drawing flags
     // Draws only the document, without any tool paths, or any rotation/translation.
     private boolean drawMinimal = false;
+    // The scale factor of the last frame. While this keeps changing (ex. pinch zooming) we draw paths directly
+    // instead of redrawing every tile at every new scale.
+    private float lastFrameScale = 0;
+    // How long to wait after zooming stops before rebuilding tiles, in milliseconds
+    private static final long ZOOM_SETTLE_DELAY = 150;
+    // How often the performance overlay is redrawn when nothing else is happening, in milliseconds
+    private static final long PERFORMANCE_OVERLAY_DELAY = 500;
+    // If this isn't null, the document is drawn on a separate thread onto this surface instead of in onDraw
+    private RenderSurface renderSurface;
+    // Our background from the layout, which is taken away while renderSurface is used
+    private Drawable layoutBackground;
+    // Shows numbers from Metrics on top of everything, if it isn't null
+    private PerformanceOverlay performanceOverlay;
+    // Redraws the performance overlay every PERFORMANCE_OVERLAY_DELAY. There's only ever one of these waiting,
+    // otherwise every frame would queue another redraw and we'd never stop drawing.
+    private final Runnable refreshPerformanceOverlay = this::invalidate;
+    // Measures how long touches take to show up on the screen (while the performance overlay is on)
+    private final LatencyTracker latencyTracker = new LatencyTracker();
+    // When onDraw started (from Metrics.start), and the time of the first touch event since the last frame
+    private long drawStart = 0;
+    private long inputTime = 0;
 
     /**
      * Constructor
@@ -66,6 +112,9 @@ public final class DrawCanvas extends View {
                 Float.parseFloat(prefs.getString("documentWidth", "816")),
                 Float.parseFloat(prefs.getString("documentHeight", "1056"))
         );
+        // Old history gets written to an app-private file once it goes past the memory budget
+        history = new CommandHistory(new HistoryFile(new File(context.getNoBackupFilesDir(), "history")));
+        setHistoryBudget(Float.parseFloat(prefs.getString("historyBudget", "64")));
     }
 
     /**
@@ -128,10 +177,10 @@ public final class DrawCanvas extends View {
      */
     @SuppressLint("DefaultLocale")
     public void loadFile(Uri uri) throws IOException {
-        // Clear path list/history
-        paths.clear();
-        versions.clear();
-        version_index = -1;
+        // Keep the old document so loading can be undone
+        PersistentVector<DrawPath> oldPaths = paths;
+        Point oldSize = documentSize.clone();
+        int oldColor = documentColor;
         // Load the file
         svgHelper.createSVG();
         svgHelper.loadFile(getContext().getContentResolver().openInputStream(uri));
@@ -143,8 +192,7 @@ public final class DrawCanvas extends View {
         editor.putString("documentHeight", String.format("%d", (int) documentSize.y));
         editor.apply();
         // Save everything in the version history
-        versions.add(cloneDrawPathList(paths));
-        version_index += 1;
+        history.push(new LoadDocumentCommand(this, oldPaths, oldSize, oldColor));
     }
 
     /**
@@ -155,75 +203,78 @@ public final class DrawCanvas extends View {
     @SuppressLint("ClickableViewAccessibility")
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        // Runs chosenTool.onTouchEvent if it exists, otherwise don't update the screen.
-        if (tool == TOOLS.none || !Objects.requireNonNull(getTool()).onTouchEvent(event)) {
-            return false;
-        } else {
-            if (getTool().allowVersionBackup() && event.getAction() == MotionEvent.ACTION_UP) {
-                // Remove any edits after the current.
-                while (versions.size() > version_index + 1) {
-                    versions.remove(versions.size() - 1);
+        long start = Tracer.begin(Tracer.TOUCH);
+        try {
+            // Runs chosenTool.onTouchEvent if it exists, otherwise don't update the screen.
+            dirtyRegion.setEmpty();
+            if (tool == TOOLS.none || !Objects.requireNonNull(getTool()).onTouchEvent(event)) {
+                return false;
+            } else {
+                if (inputTime == 0) {
+                    inputTime = event.getEventTime();
+                }
+                // Indicate view should be redrawn -- only the part the tool changed if it told us, otherwise all of it
+                if (dirtyRegion.isEmpty()) {
+                    postInvalidate();
+                } else {
+                    postInvalidate(dirtyRegion.left, dirtyRegion.top, dirtyRegion.right, dirtyRegion.bottom);
                 }
-                versions.add(cloneDrawPathList(paths)); // adds to the end ∴ newest changes are at the end of the list
-                System.out.println(versions + " " + versions.size());
-                if (versions.size() < MAX_VERSIONS - 1) version_index += 1;
-                if (versions.size() > MAX_VERSIONS)
-                    versions.remove(0); // delete the oldest change if the list has grown too much
+                return true; // Indicate we've consumed the touch
             }
-            postInvalidate(); // Indicate view should be redrawn
-            return true; // Indicate we've consumed the touch
+        } finally {
+            Tracer.end(Tracer.TOUCH, start);
         }
     }
 
     /**
-     * (deep) Clones a list of DrawPaths.
-     * TODO: Instead of making a new list, with pointers to the same DrawPaths, clone those DrawPaths (deep clone the list).
-     *       This is so that if you erase a part of a path, and modify it, you can undo that.
+     * Marks part of the canvas as changed, so that after the current touch event only that part of the
+     * screen is redrawn. Tools should call this with everything they changed, or not at all (then the whole
+     * screen is redrawn).
      *
-     * @param listToClone The list you want to clone.
-     * @return A deep cloned version of the list.
+     * @param bounds The area that changed, in canvas coordinates (including stroke widths)
      */
-    public LinkedList<DrawPath> cloneDrawPathList(LinkedList<DrawPath> listToClone) {
-        LinkedList<DrawPath> list = new LinkedList<>();
-        for (DrawPath pathToClone : listToClone) {
-            list.add(pathToClone.clone());
-        }
-        return list;
+    public void invalidateCanvasRegion(RectF bounds) {
+        float scale = panTool.scaleFactor;
+        float offsetX = panTool.offset.x + panTool.panOffset.x;
+        float offsetY = panTool.offset.y + panTool.panOffset.y;
+        float padding = DIRTY_REGION_PADDING * getResources().getDisplayMetrics().density;
+        dirtyRegion.union(
+                (int) Math.floor((bounds.left + offsetX) * scale - padding),
+                (int) Math.floor((bounds.top + offsetY) * scale - padding),
+                (int) Math.ceil((bounds.right + offsetX) * scale + padding),
+                (int) Math.ceil((bounds.bottom + offsetY) * scale + padding)
+        );
     }
 
     /**
-     * Undoes an operation by resetting DrawCanvas.paths to what it looked like after the previous operation.
+     * Undoes an operation by reverting the last command in DrawCanvas.history.
      */
     public void undo() {
-        if (version_index > 0) {
-            System.out.println(versions.toString() + (version_index - 1));
-            version_index -= 1;
-            paths = cloneDrawPathList(versions.get(version_index));
-        } else {
-            version_index = -1;
-            paths.clear();
-        }
+        history.undo(this);
         // Force redraw
         postInvalidate();
         // Re-initialise tools
-        if (tool == TOOLS.eraser) getTool().init();
+        if (getTool() != null) getTool().init();
     }
 
     /**
-     * Redoes an operation by setting DrawCanvas.paths to what it looked like after an operation you undid to.
+     * Redoes an operation by reapplying the last command you undid.
      */
     public void redo() {
-        if (version_index < versions.size() - 1) {
-            version_index += 1;
-            paths = cloneDrawPathList(versions.get(version_index));
-        } else if (version_index <= 0 && !versions.isEmpty()) {
-            version_index = 0;
-            paths = cloneDrawPathList(versions.get(0));
-        }
+        history.redo(this);
         // Force redraw
         postInvalidate();
         // Re-initialise tools
-        if (tool == TOOLS.eraser) getTool().init();
+        if (getTool() != null) getTool().init();
+    }
+
+    /**
+     * Sets how much memory the undo history can use before older changes are written to disk.
+     *
+     * @param megabytes The memory budget, in MB
+     */
+    public void setHistoryBudget(float megabytes) {
+        history.setByteBudget((long) (megabytes * 1024 * 1024));
     }
 
     /**
@@ -286,6 +337,17 @@ public final class DrawCanvas extends View {
         );
     }
 
+    /**
+     * Gets an index of where every path in the document is. It's brought up to date with
+     * <code>DrawCanvas.paths</code> every time you call this, so don't keep it around.
+     *
+     * @return The spatial index for the current document
+     */
+    public SpatialIndex getSpatialIndex() {
+        spatialIndex.sync(paths);
+        return spatialIndex;
+    }
+
     /**
      * Gets the pan tool's scale factor.
      *
@@ -310,11 +372,29 @@ public final class DrawCanvas extends View {
      * @param canvas the canvas on which the background will be drawn
      */
     protected void onDraw(@NonNull Canvas canvas) {
+        long start = Tracer.begin(Tracer.DRAW);
+        try {
+            drawCanvas(canvas);
+        } finally {
+            Tracer.end(Tracer.DRAW, start);
+        }
+    }
+
+    /**
+     * Does the work of onDraw (split out so that onDraw can trace it).
+     */
+    private void drawCanvas(@NonNull Canvas canvas) {
+        drawStart = drawMinimal ? 0 : Metrics.start();
         // Allows us to do things like setting a custom background
         super.onDraw(canvas);
         float screenDensity = getResources().getDisplayMetrics().density;
         //
         ((MainActivity) getContext()).updateInfoBar();
+        // If we have a render thread, it draws everything instead
+        if (renderSurface != null && !drawMinimal) {
+            renderSurface.render(createFrame(screenDensity));
+            return;
+        }
         // Draws things on the screen
         canvas.save();
         // SCALES, THEN TRANSLATES (translations are independent of scales)
@@ -322,40 +402,203 @@ public final class DrawCanvas extends View {
             canvas.scale(panTool.scaleFactor, panTool.scaleFactor);
             canvas.translate(panTool.offset.x + panTool.panOffset.x, panTool.offset.y + panTool.panOffset.y);
         }
-        // Draws what the page will look like
-        paint.setColor(documentColor);
+        drawPage(canvas, paint, documentSize.x, documentSize.y, documentColor, panTool.scaleFactor, drawMinimal);
+        // Draws every path, then tool path
+        SpatialIndex index = getSpatialIndex();
+        if (drawMinimal || panTool.scaleFactor != lastFrameScale) {
+            // Only draws the paths we can see
+            if (drawMinimal) {
+                viewport.set(0, 0, documentSize.x, documentSize.y);
+            } else {
+                Point start = mapPoint(0, 0);
+                Point end = mapPoint(getWidth(), getHeight());
+                viewport.set(start.x, start.y, end.x, end.y);
+            }
+            // Exports are drawn at 1x, so they shouldn't use a zoomed out level of detail
+            float scaleFactor = drawMinimal ? 1 : getScaleFactor();
+            int count = index.query(viewport);
+            for (int i = 0; i < count; i++) {
+                paths.get(index.getResult(i)).draw(canvas, screenDensity, scaleFactor);
+            }
+            Metrics.count(Metrics.PATHS_CULLED, paths.size() - count);
+            if (!drawMinimal) {
+                // Once the scale stops changing, draw the next frame with tiles
+                lastFrameScale = panTool.scaleFactor;
+                postInvalidateDelayed(ZOOM_SETTLE_DELAY);
+            }
+        } else {
+            // Tiles are drawn without our scale/translation, since they're already scaled
+            float offsetX = (panTool.offset.x + panTool.panOffset.x) * panTool.scaleFactor;
+            float offsetY = (panTool.offset.y + panTool.panOffset.y) * panTool.scaleFactor;
+            canvas.save();
+            canvas.translate(-panTool.offset.x - panTool.panOffset.x, -panTool.offset.y - panTool.panOffset.y);
+            canvas.scale(1 / panTool.scaleFactor, 1 / panTool.scaleFactor);
+            tileCache.draw(canvas, paths, index, panTool.scaleFactor, offsetX, offsetY, screenDensity);
+            canvas.restore();
+        }
+        // Paths being dragged are drawn over the document (they're hidden from it until the drag ends)
+        if (!drawMinimal && getTool() != null && getTool().getDragLayer() != null) {
+            getTool().getDragLayer().draw(canvas, screenDensity, getScaleFactor());
+        }
+        if (!drawMinimal && getTool() != null && getTool().getToolPaths() != null) {
+            pointOverlay.begin(screenDensity, getScaleFactor());
+            if (getTool().highlightsPaths()) {
+                paint.reset();
+                paint.setARGB(150, 0, 0, 0);
+                paint.setStyle(Paint.Style.FILL);
+                canvas.drawPaint(paint);
+                Point start = mapPoint(0, 0);
+                Point end = mapPoint(getWidth(), getHeight());
+                viewport.set(start.x, start.y, end.x, end.y);
+                pathHighlighter.draw(canvas, paths, index, viewport, pointOverlay, screenDensity, getScaleFactor());
+            }
+            for (DrawPath path : getTool().getToolPaths()) {
+                path.draw(canvas, screenDensity, getScaleFactor());
+                if (path.drawPoints) {
+                    pointOverlay.add(path);
+                }
+            }
+            pointOverlay.draw(canvas);
+        }
+
+        canvas.restore();
+    }
+
+    /**
+     * Runs after onDraw: records how long the frame took, and draws the performance overlay on top of everything.
+     *
+     * @param canvas The canvas onDraw drew to
+     */
+    @Override
+    public void onDrawForeground(@NonNull Canvas canvas) {
+        super.onDrawForeground(canvas);
+        if (drawMinimal || performanceOverlay == null) {
+            return;
+        }
+        Metrics.stop(Metrics.DRAW, drawStart);
+        if (inputTime != 0) {
+            Metrics.record(Metrics.INPUT_TO_FRAME, (SystemClock.uptimeMillis() - inputTime) * 1_000_000);
+            inputTime = 0;
+        }
+        latencyTracker.onFrameDrawn();
+        Metrics.set(Metrics.HISTORY_MEMORY, history.getMemoryUsed());
+        // The render thread ends its own frames
+        if (renderSurface == null) {
+            Metrics.endFrame();
+        }
+        performanceOverlay.draw(canvas, getResources().getDisplayMetrics().density);
+        // Keeps the numbers up to date
+        removeCallbacks(refreshPerformanceOverlay);
+        postDelayed(refreshPerformanceOverlay, PERFORMANCE_OVERLAY_DELAY);
+    }
+
+    /**
+     * Draws what the page will look like: a rectangle with the document color, plus a shadow and border
+     * to show its edges.
+     *
+     * @param canvas      The canvas to draw to, already scaled/translated to document coordinates
+     * @param paint       Paint to use (gets reset)
+     * @param scaleFactor Scale of the canvas, so the border is always the same width on the screen
+     * @param minimal     If true, only the rectangle is drawn (ex. for exporting)
+     */
+    static void drawPage(Canvas canvas, Paint paint, float width, float height, int color, float scaleFactor, boolean minimal) {
+        paint.reset();
+        paint.setColor(color);
         paint.setStyle(Paint.Style.FILL);
-        if (!drawMinimal) {
+        if (!minimal) {
             paint.setShadowLayer(12, 0, 0, Color.argb(200, 0, 0, 0));
         }
-        canvas.drawRect(0, 0, documentSize.x, documentSize.y, paint);
+        canvas.drawRect(0, 0, width, height, paint);
         paint.reset();
         // Draws a stroke for the page
-        if (!drawMinimal) {
+        if (!minimal) {
             paint.setColor(Color.GRAY);
-            paint.setStrokeWidth(5 / panTool.scaleFactor); // Always five pixels no matter scale
+            paint.setStrokeWidth(5 / scaleFactor); // Always five pixels no matter scale
             paint.setStyle(Paint.Style.STROKE);
-            canvas.drawRect(0, 0, documentSize.x, documentSize.y, paint);
+            canvas.drawRect(0, 0, width, height, paint);
             paint.reset();
         }
-        // Draws every path, then tool path
-        for (DrawPath path : paths) {
-            paint.reset();
-            path.draw(canvas, paint, screenDensity, getScaleFactor());
-        }
-        if (!drawMinimal && getTool() != null && getTool().getToolPaths() != null) {
-            if (getTool() instanceof EraserTool) {
-                paint.setARGB(150, 0, 0, 0);
-                paint.setStyle(Paint.Style.FILL);
-                canvas.drawPaint(paint);
-            }
+    }
+
+    /**
+     * Takes a snapshot of everything needed to draw the canvas, for the render thread.
+     *
+     * @param screenDensity Screen density from the display metrics
+     * @return A frame that can be drawn on another thread
+     */
+    private RenderSurface.Frame createFrame(float screenDensity) {
+        ArrayList<DrawPath> toolPaths = new ArrayList<>();
+        if (getTool() != null && getTool().getToolPaths() != null) {
             for (DrawPath path : getTool().getToolPaths()) {
-                paint.reset();
-                path.draw(canvas, paint, screenDensity, getScaleFactor());
+                toolPaths.add(path.snapshot());
             }
         }
+        return new RenderSurface.Frame(
+                paths,
+                documentSize.x,
+                documentSize.y,
+                documentColor,
+                panTool.scaleFactor,
+                panTool.offset.x + panTool.panOffset.x,
+                panTool.offset.y + panTool.panOffset.y,
+                screenDensity,
+                toolPaths,
+                getTool() != null && getTool().highlightsPaths(),
+                getTool() != null ? getTool().getDragLayer() : null
+        );
+    }
 
-        canvas.restore();
+    /**
+     * Switches between drawing on the UI thread (in onDraw) and drawing on a render thread.
+     *
+     * @param surface The RenderSurface to draw with, or null to draw in onDraw
+     */
+    public void setRenderSurface(@Nullable RenderSurface surface) {
+        if (renderSurface == surface) {
+            return;
+        }
+        if (renderSurface != null) {
+            renderSurface.setVisibility(GONE);
+        }
+        if (layoutBackground == null) {
+            layoutBackground = getBackground();
+        }
+        renderSurface = surface;
+        if (surface != null) {
+            surface.setVisibility(VISIBLE);
+            // The surface is behind us, so we have to be see-through
+            setBackground(null);
+        } else {
+            setBackground(layoutBackground);
+        }
+        postInvalidate();
+    }
+
+    /**
+     * Shows or hides the performance overlay, and starts or stops recording Metrics.
+     *
+     * @param enabled Whether to show the overlay
+     */
+    public void setPerformanceOverlayEnabled(boolean enabled) {
+        if (enabled == (performanceOverlay != null)) {
+            return;
+        }
+        if (!enabled) {
+            removeCallbacks(refreshPerformanceOverlay);
+            Log.i(LatencyTracker.TAG, "Touch to frame latency: " + latencyTracker.dump());
+        }
+        Metrics.reset();
+        latencyTracker.reset();
+        Metrics.enabled = enabled;
+        performanceOverlay = enabled ? new PerformanceOverlay(latencyTracker) : null;
+        postInvalidate();
+    }
+
+    /**
+     * @return The tracker tools report touches to, so we can measure how long they take to be drawn
+     */
+    public LatencyTracker getLatencyTracker() {
+        return latencyTracker;
     }
 
     public enum TOOLS {none, paint, eraser, pan, select}
@@ -2,19 +2,22 @@ package io.github.pastthepixels.freepaint.Graphics;
 
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Paint;
+import android.graphics.Matrix;
 import android.graphics.Path;
+import android.graphics.RectF;
 
 import androidx.annotation.NonNull;
 
-import java.util.ArrayList;
-
-import dev.romainguy.graphics.path.PathIterator;
-import dev.romainguy.graphics.path.PathSegment;
-import dev.romainguy.graphics.path.Paths;
+import io.github.pastthepixels.freepaint.Debug.Metrics;
+import io.github.pastthepixels.freepaint.Debug.Tracer;
 import io.github.pastthepixels.freepaint.Utils;
 
-
+/**
+ * A path in the document: a list of points and how to draw them.
+ * Once a path has been added to <code>DrawCanvas.paths</code>, older versions of the document (for undo/redo) share
+ * it, so <b>don't change a path that's in the document</b> -- clone it, change the clone, and replace the original
+ * with <code>PersistentVector.set</code>.
+ */
 public class DrawPath {
     // watch about adding new variables because you have to add them to the clone function at the bottom!
 
@@ -24,9 +27,9 @@ public class DrawPath {
     public DrawAppearance appearance = new DrawAppearance(Color.BLACK, -1);
 
     /**
-     * List of points
+     * List of points (stored as primitive arrays, see <code>PointBuffer</code>)
      */
-    public ArrayList<Point> points = new ArrayList<>();
+    public PointBuffer points = new PointBuffer();
 
     /**
      * Whether or not the path is closed (a line is drawn from the end point to the start point)
@@ -34,7 +37,8 @@ public class DrawPath {
     public boolean isClosed = false;
 
     /**
-     * Whether or not to draw each point as a circle.
+     * Whether or not to draw each point (and its handles) on top of the path. Points aren't drawn by
+     * <code>draw</code>, but all at once for every tool path by a <code>PointOverlay</code>.
      */
     public boolean drawPoints = false;
 
@@ -43,11 +47,91 @@ public class DrawPath {
      */
     public double simplificationAmount = 0;
 
+    /**
+     * Whether <code>finalise</code> fits curves to the points (see <code>CurveFitter</code>) instead of simplifying
+     * them and guessing handles. <code>simplificationAmount</code> is then how far the curves can be from the points.
+     */
+    public boolean fitCurves = false;
+
     /**
      * android.graphics.Path instance. FreePaint handles math but this is how we get that math to be shown on the screen.
      */
     private Path path;
 
+    /**
+     * Transform applied to the points when the path is drawn (see <code>setTransform</code>), or null if there isn't
+     * one. This is never changed in place, so copies of the path can share it.
+     */
+    private Matrix transform;
+
+    /**
+     * How much <code>transform</code> scales things on average (1 if there's no transform)
+     */
+    private float transformScale = 1;
+
+    /**
+     * Inverse of <code>transform</code> for hit testing, or null if it hasn't been needed yet
+     */
+    private Matrix inverse;
+
+    /**
+     * Cached result of <code>getBounds()</code>, or null if it has to be recomputed
+     */
+    private RectF bounds;
+
+    /**
+     * Cached result of <code>getFlattenedPath()</code>, or null if it has to be recomputed
+     */
+    private FlattenedPath flattened;
+
+    /**
+     * Simplified versions of the path to draw when zoomed out (see <code>getPathForScale</code>).
+     * Each level is made the first time it's needed, and they're all thrown away when the points change.
+     */
+    private Path[] lodPaths;
+
+    /**
+     * Whether <code>path</code> is a live path that's being extended by <code>addLivePoint</code>
+     */
+    private boolean isLive = false;
+
+    /**
+     * Whether to always draw at full detail, without making levels of detail (ex. for snapshots, which are usually
+     * only drawn once)
+     */
+    private boolean skipDetailLevels = false;
+
+    /**
+     * Number of levels of detail. Level n is simplified with an epsilon of 2^n document pixels.
+     */
+    private static final int LOD_LEVELS = 4;
+
+    /**
+     * Paths with fewer points than this are always drawn at full detail, since simplifying them won't save much
+     */
+    private static final int LOD_MIN_POINTS = 16;
+
+    /**
+     * Paths can be simplified on the UI thread and the render thread at the same time, so each gets its own Simplifier
+     * (ThreadLocal.withInitial needs API 26, so this overrides initialValue instead)
+     */
+    private static final ThreadLocal<Simplifier> SIMPLIFIER = new ThreadLocal<Simplifier>() {
+        @Override
+        protected Simplifier initialValue() {
+            return new Simplifier();
+        }
+    };
+
+    /**
+     * Same as <code>SIMPLIFIER</code>, for <code>fitCurves</code>
+     */
+    private static final ThreadLocal<CurveFitter> CURVE_FITTER = new ThreadLocal<CurveFitter>() {
+        @Override
+        protected CurveFitter initialValue() {
+            return new CurveFitter();
+        }
+    };
+
     /**
      * Constructor for DrawPath
      */
@@ -60,15 +144,38 @@ public class DrawPath {
      */
     public void addPoint(Point point) {
         points.add(point);
+        pointsChanged();
     }
 
 
+    /**
+     * Adds a point to a path that's being drawn. Instead of regenerating the whole path every frame, this
+     * extends the cached path with one straight line, so drawing a long stroke doesn't get slower as it goes.
+     * Call <code>cachePath</code> once the path is done to replace the lines with the real (curved) path.
+     *
+     * @param point The point to add
+     */
+    public void addLivePoint(Point point) {
+        if (!isLive) {
+            path = generatePath();
+            isLive = true;
+        }
+        if (points.isEmpty()) {
+            path.moveTo(point.x, point.y);
+        } else {
+            path.lineTo(point.x, point.y);
+        }
+        addPoint(point);
+    }
+
     /**
      * Clears all points in a DrawPath, then resets <code>DrawPath.path</code>
      */
     public void clear() {
         points.clear();
         this.path = null;
+        this.isLive = false;
+        pointsChanged();
     }
 
     /**
@@ -79,18 +186,16 @@ public class DrawPath {
     public Path generatePath() {
         Path path = new Path();
         for (int i = 0; i < points.size(); i++) {
-            Point point = points.get(i);
-            if (i == 0 || point.command == Point.COMMANDS.move) {
-                path.moveTo(point.x, point.y);
+            if (i == 0 || points.getCommand(i) == Point.COMMANDS.move) {
+                path.moveTo(points.getX(i), points.getY(i));
             } else {
-                Point prev = points.get(i - 1);
                 path.cubicTo(
-                        prev.getRightHandle().x,
-                        prev.getRightHandle().y,
-                        point.getLeftHandle().x,
-                        point.getLeftHandle().y,
-                        point.x,
-                        point.y
+                        points.getRightHandleX(i - 1),
+                        points.getRightHandleY(i - 1),
+                        points.getLeftHandleX(i),
+                        points.getLeftHandleY(i),
+                        points.getX(i),
+                        points.getY(i)
                 );
             }
         }
@@ -121,11 +226,225 @@ public class DrawPath {
         }
     }
 
+    /**
+     * Gets the path as it's drawn, with the transform applied, ex. for making a Region.
+     *
+     * @return The cached path if there's no transform, otherwise a transformed copy of it
+     */
+    public Path getTransformedPath() {
+        Path path = getPathOrGenerate();
+        if (transform == null) {
+            return path;
+        }
+        Path transformed = new Path();
+        path.transform(transform, transformed);
+        return transformed;
+    }
+
+    /**
+     * @return The transform applied to the points when the path is drawn, or null if there isn't one. Don't change it!
+     */
+    public Matrix getTransform() {
+        return transform;
+    }
+
+    /**
+     * Sets the transform applied to the points when the path is drawn (with <code>Canvas.concat</code>), so the path
+     * can be moved/scaled/rotated without changing its points or regenerating its Path. Bounds and hit testing
+     * take it into account, and SVGs save it as the <code>transform</code> attribute.
+     *
+     * @param matrix The new transform (it's copied), or null for none
+     */
+    public void setTransform(Matrix matrix) {
+        transform = matrix == null || matrix.isIdentity() ? null : new Matrix(matrix);
+        transformScale = transform == null ? 1 : transform.mapRadius(1);
+        inverse = null;
+        bounds = null;
+    }
+
+    /**
+     * Makes a copy of the path with another transform applied after its own. Nothing else is copied -- the copy
+     * shares its points and cached Paths with this path, so this takes the same time no matter how big the path is.
+     * Since they're shared, neither path's points should be changed in place afterwards (which is already true for
+     * paths in the document).
+     *
+     * @param by The transform to apply
+     * @return The transformed copy
+     */
+    public DrawPath transformed(Matrix by) {
+        DrawPath copy = new DrawPath(path);
+        copy.appearance = appearance;
+        copy.points = points;
+        copy.isClosed = isClosed;
+        copy.drawPoints = drawPoints;
+        copy.simplificationAmount = simplificationAmount;
+        copy.fitCurves = fitCurves;
+        copy.isLive = isLive;
+        copy.skipDetailLevels = skipDetailLevels;
+        copy.flattened = flattened;
+        copy.lodPaths = lodPaths;
+        Matrix matrix = transform == null ? new Matrix() : new Matrix(transform);
+        matrix.postConcat(by);
+        copy.setTransform(matrix);
+        return copy;
+    }
+
     /**
      * Caches generatePath() into a thing we can reuse (dp)
      */
     public void cachePath() {
+        long start = Tracer.begin(Tracer.CACHE_PATH);
         this.path = generatePath();
+        this.isLive = false;
+        pointsChanged();
+        Tracer.end(Tracer.CACHE_PATH, start);
+    }
+
+    /**
+     * Gets the bounds of the path (after its transform), including half the stroke width on each side.
+     * These are cached until the points change, so don't modify the RectF you get!
+     *
+     * @return The bounds of the path
+     */
+    public RectF getBounds() {
+        if (bounds == null) {
+            // Only set once it's computed, since paths in the document can be drawn from a render thread too
+            RectF computed = new RectF();
+            getPathOrGenerate().computeBounds(computed, true);
+            if (appearance.stroke != -1) {
+                computed.inset(-appearance.strokeSize / 2f, -appearance.strokeSize / 2f);
+            }
+            if (transform != null) {
+                transform.mapRect(computed);
+            }
+            bounds = computed;
+        }
+        return bounds;
+    }
+
+    /**
+     * Gets the path flattened into straight edges, for hit testing (see <code>FlattenedPath</code>).
+     * This is cached until the points change, and is in the path's own coordinates (before the transform).
+     *
+     * @return The flattened path
+     */
+    public FlattenedPath getFlattenedPath() {
+        FlattenedPath flattened = this.flattened;
+        if (flattened == null) {
+            flattened = this.flattened = new FlattenedPath(points);
+        }
+        return flattened;
+    }
+
+    /**
+     * Gets the path to draw at a scale factor. When zoomed out far enough that points start landing on the same
+     * pixel, this is a simplified copy of the path (with straight lines) that looks the same but is much faster to draw.
+     *
+     * @param scaleFactor The scale of the canvas the path will be drawn on
+     * @return The path to draw
+     */
+    public Path getPathForScale(float scaleFactor) {
+        int level = getDetailLevel(scaleFactor);
+        // Live paths change every frame, so simplifying them would cost more than it saves
+        if (level < 0 || isLive || skipDetailLevels || points.size() < LOD_MIN_POINTS) {
+            return getPathOrGenerate();
+        }
+        Path[] lodPaths = this.lodPaths;
+        if (lodPaths == null) {
+            lodPaths = this.lodPaths = new Path[LOD_LEVELS];
+        }
+        if (lodPaths[level] == null) {
+            lodPaths[level] = generateSimplifiedPath(1 << level);
+        }
+        return lodPaths[level];
+    }
+
+    /**
+     * Finds the most simplified level of detail that's still accurate to half a pixel on the screen.
+     *
+     * @return The level, or -1 if the path should be drawn at full detail
+     */
+    private static int getDetailLevel(float scaleFactor) {
+        // How far a point can move (in document pixels) without moving more than half a pixel on the screen
+        float tolerance = 0.5f / scaleFactor;
+        int level = -1;
+        while (level + 1 < LOD_LEVELS && (1 << (level + 1)) <= tolerance) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Generates a path with straight lines, simplified with a <code>Simplifier</code>. Curves are flattened into lines
+     * first, so the simplified path stays within <code>epsilon</code> of the curves that are actually drawn (and not
+     * just of the points). Each subpath (started by a point with the "move" command) is simplified on its own.
+     *
+     * @param epsilon How far (in document pixels) the simplified path can be from the real one
+     * @return A generated path
+     */
+    private Path generateSimplifiedPath(double epsilon) {
+        Path simplified = new Path();
+        Simplifier simplifier = SIMPLIFIER.get();
+        // A quarter of the error comes from flattening, and the rest from simplifying
+        float flatness = (float) epsilon / 4;
+        int start = 0;
+        for (int i = 1; i <= points.size(); i++) {
+            if (i == points.size() || points.getCommand(i) == Point.COMMANDS.move) {
+                int count = 1;
+                for (int j = start + 1; j < i; j++) {
+                    count += FlattenedPath.segmentCount(points, j, flatness);
+                }
+                float[] coordinates = simplifier.getBuffer(count);
+                coordinates[0] = points.getX(start);
+                coordinates[1] = points.getY(start);
+                int filled = 1;
+                for (int j = start + 1; j < i; j++) {
+                    int segments = FlattenedPath.segmentCount(points, j, flatness);
+                    for (int step = 1; step < segments; step++) {
+                        coordinates[filled * 2] = FlattenedPath.evaluateX(points, j, step / (float) segments);
+                        coordinates[filled * 2 + 1] = FlattenedPath.evaluateY(points, j, step / (float) segments);
+                        filled++;
+                    }
+                    coordinates[filled * 2] = points.getX(j);
+                    coordinates[filled * 2 + 1] = points.getY(j);
+                    filled++;
+                }
+                int kept = simplifier.simplify(coordinates, count, epsilon - flatness);
+                simplified.moveTo(coordinates[0], coordinates[1]);
+                for (int j = 1; j < kept; j++) {
+                    simplified.lineTo(coordinates[j * 2], coordinates[j * 2 + 1]);
+                }
+                start = i;
+            }
+        }
+        if (isClosed) {
+            simplified.close();
+        }
+        return simplified;
+    }
+
+    /**
+     * Throws away everything that's computed from the points, so it gets recomputed next time it's needed.
+     */
+    private void pointsChanged() {
+        bounds = null;
+        flattened = null;
+        lodPaths = null;
+    }
+
+    /**
+     * Roughly estimates how many bytes this path takes up in memory: its points, its appearance, and the cached
+     * <code>android.graphics.Path</code> (which stores about three coordinate pairs per cubic segment).
+     *
+     * @return An estimate in bytes
+     */
+    public long estimateSize() {
+        // DrawPath, DrawAppearance, and the points
+        long size = 96 + points.estimateSize();
+        if (path != null) {
+            size += points.size() * 28L;
+        }
+        return size;
     }
 
     /**
@@ -133,188 +452,210 @@ public class DrawPath {
      * smoothen lines after they are drawn.
      */
     public void finalise() {
-        // Simplifies the path.
-        points = simplify(points, simplificationAmount);
-        // Generates handles for each point.
+        long start = Metrics.start();
+        long traceStart = Tracer.begin(Tracer.FINALISE);
+        pointsChanged();
+        long simplifyStart = Tracer.begin(Tracer.SIMPLIFY);
+        if (fitCurves) {
+            // Replaces the points with the ends of as few curves as possible
+            PointBuffer fitted = new PointBuffer(points.size());
+            CURVE_FITTER.get().fit(points, simplificationAmount > 0 ? simplificationAmount : CurveFitter.DEFAULT_TOLERANCE, fitted);
+            points = fitted;
+            Tracer.end(Tracer.SIMPLIFY, simplifyStart);
+        } else {
+            // Simplifies the path.
+            simplify(points, simplificationAmount);
+            Tracer.end(Tracer.SIMPLIFY, simplifyStart);
+            generateHandles();
+        }
+        Tracer.end(Tracer.FINALISE, traceStart);
+        Metrics.stop(Metrics.FINALISE, start);
+    }
+
+    /**
+     * Generates handles for each point from the points next to it.
+     */
+    private void generateHandles() {
         for (int i = 0; i < points.size(); i++) {
-            Point point = points.get(i);
+            float x = points.getX(i);
+            float y = points.getY(i);
             if (i == 0) {
-                Point next = points.get(i + 1);
-                point.setRightHandle(new Point(
-                        ((next.x - point.x) / 3),
-                        ((next.y - point.y) / 3)
-                ));
+                if (points.size() > 1) {
+                    points.setHandles(i, 0, 0, (points.getX(i + 1) - x) / 3, (points.getY(i + 1) - y) / 3);
+                }
             } else if (i != points.size() - 1) {
-                Point prev = points.get(i - 1);
-                Point next = points.get(i + 1);
+                float prevX = points.getX(i - 1);
+                float prevY = points.getY(i - 1);
+                float nextX = points.getX(i + 1);
+                float nextY = points.getY(i + 1);
                 // Set handles (left handle is mirrored; hermite splines!
-                Point rightHandle = new Point(
-                        ((next.x - prev.x) / 6),
-                        ((next.y - prev.y) / 6)
-                );
-                point.setRightHandle(rightHandle);
-                point.setLeftHandle(rightHandle.multiply(-1));
+                float handleX = (nextX - prevX) / 6;
+                float handleY = (nextY - prevY) / 6;
+                points.setHandles(i, -handleX, -handleY, handleX, handleY);
                 // If the angles between the current point and the next point/current and previous are acute/right, make the corner sharp.
-                double angle = Utils.angleBetweenVectors(prev.subtract(point), point.subtract(next));
+                double angle = Utils.angleBetweenVectors(prevX - x, prevY - y, x - nextX, y - nextY);
                 if (Math.abs(angle) >= Math.PI/2) { // idk how this works but it does. it shouldn't be this way.
-                    point.setLeftHandle(new Point(0, 0 ));
-                    point.setRightHandle(new Point(0, 0 ));
+                    points.setHandles(i, 0, 0, 0, 0);
                 }
             }
         }
     }
 
     /**
-     * Simplifies points using the Ramer-Douglas-Peucker algorithm.
-     * Adapted from the pseudocde from https://en.wikipedia.org/wiki/Ramer%E2%80%93Douglas%E2%80%93Peucker_algorithm
+     * Simplifies points using the Ramer-Douglas-Peucker algorithm (see <code>Simplifier</code>).
+     *
+     * Points that are thrown away are removed from <code>points</code>.
      */
-    private ArrayList<Point> simplify(ArrayList<Point> points, double epsilon) {
-        double max_distance = 0;
-        int index = 0;
-        for (int i = 2; i < points.size() - 1; i++) {
-            double distance = Utils.distanceFromPointToLine(points.get(0), points.get(points.size() - 1), points.get(i));
-            if (distance > max_distance) {
-                index = i;
-                max_distance = distance;
-            }
-        }
-
-        ArrayList<Point> simplified = new ArrayList<>();
-
-        if (max_distance > epsilon) {
-            // Like merge sort
-            ArrayList<Point> leftHalf = simplify(new ArrayList<Point>(points.subList(0, index)), epsilon);
-            ArrayList<Point> rightHalf = simplify(new ArrayList<Point>(points.subList(index, points.size())), epsilon);
-            Point point = rightHalf.get(0).clone().applySubtract(leftHalf.get(leftHalf.size() - 1));
-            leftHalf.remove(leftHalf.size() - 1);
-            simplified.addAll(leftHalf);
-            simplified.addAll(rightHalf);
-        } else {
-            simplified.add(points.get(0));
-            simplified.add(points.get(points.size() - 1));
+    private static void simplify(PointBuffer points, double epsilon) {
+        Simplifier simplifier = SIMPLIFIER.get();
+        float[] coordinates = simplifier.getBuffer(points.size());
+        for (int i = 0; i < points.size(); i++) {
+            coordinates[i * 2] = points.getX(i);
+            coordinates[i * 2 + 1] = points.getY(i);
         }
-
-        return simplified;
+        simplifier.simplify(coordinates, points.size(), epsilon);
+        points.retain(simplifier);
     }
 
     /**
      * Draws the path.
      *
      * @param canvas      The canvas to draw to.
-     * @param paint       The Paint instance to use -- this code is built for reusing the same one so memory can be saved.
-     * @param scaleFactor Necessary so we can draw the dots for points to always be the same size
+     * @param scaleFactor Necessary so stroke widths in dp stay the same size, and to pick a level of detail
      */
-    public void draw(Canvas canvas, Paint paint, float screenDensity, float scaleFactor) {
-        Path toDraw = getPath();
-        if (toDraw == null) {
-            toDraw = generatePath();
+    public void draw(Canvas canvas, float screenDensity, float scaleFactor) {
+        if (transform != null) {
+            canvas.save();
+            canvas.concat(transform);
+            // The transform scales the path too, so levels of detail and dp stroke widths go by both scales
+            scaleFactor *= transformScale;
         }
-        // Sets a configuration for the Paint with DrawPath.appearance
-        appearance.initialisePaint(paint, screenDensity / scaleFactor);
-        // Fills, then...
+        Path toDraw = getPathForScale(scaleFactor);
+        Metrics.count(Metrics.PATHS_DRAWN, 1);
+        Metrics.count(Metrics.POINTS_SUBMITTED, points.size());
+        // Fills, then... (with Paints cached by DrawAppearance, so nothing is allocated or reconfigured)
         if (appearance.fill != -1) {
-            paint.setColor(appearance.fill);
-            paint.setStyle(Paint.Style.FILL);
-            canvas.drawPath(toDraw, paint);
+            canvas.drawPath(toDraw, appearance.getFillPaint(screenDensity / scaleFactor));
         }
         // Strokes
         if (appearance.stroke != -1) {
-            paint.setColor(appearance.stroke);
-            paint.setStyle(Paint.Style.STROKE);
-            canvas.drawPath(toDraw, paint);
+            canvas.drawPath(toDraw, appearance.getStrokePaint(screenDensity / scaleFactor));
         }
-        // If enabled, draw points on top of everything else
-        if (drawPoints) {
-            // Laggy but provides good contrast
-            //paint.setBlendMode(BlendMode.EXCLUSION);
-            paint.setStrokeWidth(screenDensity / scaleFactor);
-            for (Point pt : points) {
-                Path shape = pt.getShape(6 * screenDensity / scaleFactor);
-                // Fill
-                paint.setColor(pt.color);
-                paint.setStyle(Paint.Style.FILL);
-                canvas.drawPath(shape, paint);
-                // Stroke
-                paint.setColor(Color.BLACK);
-                paint.setStyle(Paint.Style.STROKE);
-                canvas.drawPath(shape, paint);
-                // HANDLES
-                paint.setColor(pt.color);
-                paint.setStyle(Paint.Style.FILL);
-                canvas.drawPath(pt.getLeftHandle().getShape(4 * screenDensity / scaleFactor), paint);
-                canvas.drawPath(pt.getRightHandle().getShape(4 * screenDensity / scaleFactor), paint);
-                // HANDLE LINES
-                paint.setStyle(Paint.Style.STROKE);
-                canvas.drawLine(pt.getLeftHandle().x, pt.getLeftHandle().y, pt.x, pt.y, paint);
-                canvas.drawLine(pt.getRightHandle().x, pt.getRightHandle().y, pt.x, pt.y, paint);
-                // Done
-            }
+        if (transform != null) {
+            canvas.restore();
         }
     }
 
     /**
-     * Erases a path from another path -- assumes `path` is closed.
+     * Erases a path from another path -- assumes `path` is closed. Closed paths are erased with
+     * <code>PathBoolean</code>, so what's left is still made of curves.
      *
      * @param path The path to erase.
+     * @return Whether or not the points of this path were changed
      */
-    public void erase(DrawPath path) {
+    public boolean erase(DrawPath path) {
         // If there's no path to erase we can't do an erasing operation 💀
         if (getPath() == null) {
-            return;
+            return false;
         }
         if (isClosed) {
-            Path erased = getPathOrGenerate();
-            erased.op(path.generatePath(), Path.Op.DIFFERENCE);
-            regeneratePoints(erased);
+            PointBuffer erased = new PointBuffer();
+            if (!PathBoolean.difference(getFlattenedPath(), toLocal(path), erased)) {
+                return false;
+            }
+            points = erased;
+            pointsChanged();
+            return true;
         } else {
-            eraseFromStroke(path);
+            return eraseFromStroke(path);
         }
     }
 
     /**
-     * Regenerates points[] from DrawPath.path (android.graphics.Path) using Pathway
-     * TODO curves?
+     * Same as <code>erase</code>, but leaves this path alone (so it can be called on paths in the document).
+     * Erasing is done straight from this path's points, and a copy is only made (and its Path generated) if
+     * something was erased, so this is cheap for paths the eraser misses.
+     *
+     * @param path The path to erase.
+     * @return An erased copy of this path, or null if nothing was erased
      */
-    public void regeneratePoints(Path path) {
-        PathIterator iterator = Paths.iterator(path);
-        points.clear();
-        float[] pointArray = new float[8];
-        while (iterator.hasNext()) {
-            PathSegment.Type type = iterator.next(pointArray, 0); // The type of segment
-            if (type != PathSegment.Type.Close) {
-                Point point = new Point(pointArray[0], pointArray[1]);
-                point.command = type == PathSegment.Type.Move ? Point.COMMANDS.move : Point.COMMANDS.line;
-                points.add(point);
-            }
+    public DrawPath erased(DrawPath path) {
+        if (getPath() == null) {
+            return null;
+        }
+        PointBuffer erased = new PointBuffer(points.size());
+        boolean changed = isClosed
+                ? PathBoolean.difference(getFlattenedPath(), toLocal(path), erased)
+                : StrokeEraser.erase(points, toLocal(path), erased);
+        if (!changed) {
+            return null;
         }
+        DrawPath copy = new DrawPath(null);
+        copy.drawPoints = drawPoints;
+        copy.isClosed = isClosed;
+        copy.appearance = appearance.clone();
+        copy.points = erased;
+        copy.setTransform(transform);
+        copy.cachePath();
+        return copy;
     }
 
     /**
-     * Erases a closed path from a stroke by removing points in the stroke that are in contact with the
-     * filled shape
+     * Erases a closed path from a stroke, cutting the stroke where it crosses the outline of the closed path
+     * (see <code>StrokeEraser</code>).
      *
      * @param erasePath The path to erase.
+     * @return Whether or not anything was erased
      */
-    public void eraseFromStroke(DrawPath erasePath) {
-        int index = 0;
-        boolean state = false; // All the points we are looking at (to our knowledge) don't collide with erasePath
-        while (index < points.size()) {
-            boolean oldState = state;
-            Point point = points.get(index);
-            if (erasePath.contains(point)) {
-                points.remove(index);
-                state = true;
-            } else {
-                state = false;
-                index++;
-            }
-            // If there's a STATE CHANGE
-            if (oldState != state) {
-                if (!state) {
-                    point.command = Point.COMMANDS.move;
-                }
+    public boolean eraseFromStroke(DrawPath erasePath) {
+        PointBuffer erased = new PointBuffer(points.size());
+        if (!StrokeEraser.erase(points, toLocal(erasePath), erased)) {
+            return false;
+        }
+        points = erased;
+        pointsChanged();
+        return true;
+    }
+
+    /**
+     * Flattens another path (ex. an eraser) into this path's own coordinates, so it can be compared with
+     * <code>getFlattenedPath</code>. That way erasing from a transformed path doesn't have to change its transform.
+     *
+     * @param other The path to flatten
+     * @return The flattened path, moved from where <code>other</code> is drawn to before this path's transform
+     */
+    private FlattenedPath toLocal(DrawPath other) {
+        if (transform == null && other.transform == null) {
+            return other.getFlattenedPath();
+        }
+        Matrix matrix = other.transform == null ? new Matrix() : new Matrix(other.transform);
+        Matrix inverse = getInverse();
+        if (inverse == null) {
+            return new FlattenedPath(new PointBuffer());
+        }
+        matrix.postConcat(inverse);
+        float[] values = new float[9];
+        matrix.getValues(values);
+        PointBuffer local = other.points.copy();
+        local.transform(values[Matrix.MSCALE_X], values[Matrix.MSKEW_X], values[Matrix.MTRANS_X],
+                values[Matrix.MSKEW_Y], values[Matrix.MSCALE_Y], values[Matrix.MTRANS_Y]);
+        return new FlattenedPath(local);
+    }
+
+    /**
+     * @return The inverse of the transform (the identity if there isn't one), or null if it can't be inverted (ex.
+     * it's scaled to 0)
+     */
+    private Matrix getInverse() {
+        Matrix inverse = this.inverse;
+        if (inverse == null) {
+            inverse = new Matrix();
+            if (transform != null && !transform.invert(inverse)) {
+                return null;
             }
+            this.inverse = inverse;
         }
+        return inverse;
     }
 
     /**
@@ -323,25 +664,59 @@ public class DrawPath {
      * @param by The amount to translate all points in the DrawPath by
      */
     public void translate(Point by) {
-        for (Point point : points) {
-            point.add(by);
-        }
+        points.translate(by.x, by.y);
+        pointsChanged();
     }
 
     /**
-     * Point-shape collisions. This should be better than other implementations because by using Path.op we can account
-     * for cases where getPath() returns a path with curves instead of a polygon with straight lines!
-     * We create a test path with a circle of radius of 1, and then do Point.op with that and the current path.
-     * <b>Prioritizes using a generated path, but if it doesn't exist will use generate()</b>
+     * Point-shape collisions, with the path flattened into a polygon (see <code>FlattenedPath</code>). This is done
+     * from the points, so it works whether or not the path has been cached. The point is where it's drawn, so it's
+     * moved back by the inverse of the transform first.
      *
      * @param point The point to test
      * @return Whether or not <code>point</code> is inside of the DrawPath's path.
      */
     public boolean contains(Point point) {
-        Path pointPath = new Path();
-        pointPath.addCircle(point.x, point.y, 1, Path.Direction.CW);
-        pointPath.op(getPathOrGenerate(), Path.Op.DIFFERENCE);
-        return pointPath.isEmpty();
+        return contains(point.x, point.y);
+    }
+
+    /**
+     * Same as <code>contains(Point)</code>, without needing a Point.
+     */
+    public boolean contains(float x, float y) {
+        if (transform != null) {
+            Matrix inverse = getInverse();
+            if (inverse == null) {
+                return false;
+            }
+            float[] point = {x, y};
+            inverse.mapPoints(point);
+            x = point[0];
+            y = point[1];
+        }
+        return getFlattenedPath().contains(x, y);
+    }
+
+    /**
+     * Makes a copy of the path as it is right now, that can be drawn on another thread while this one keeps changing.
+     * Unlike <code>clone</code>, this copies the <code>android.graphics.Path</code> as-is (ex. a live path) instead of
+     * regenerating it, and only copies the list of points if they're drawn.
+     *
+     * @return A copy of the path, only meant for drawing
+     */
+    public DrawPath snapshot() {
+        DrawPath copy = new DrawPath(new Path(getPathOrGenerate()));
+        copy.appearance = appearance;
+        copy.isClosed = isClosed;
+        copy.drawPoints = drawPoints;
+        copy.transform = transform;
+        copy.transformScale = transformScale;
+        if (drawPoints) {
+            copy.points = points.copy();
+        }
+        // Snapshots are usually only drawn once, so they shouldn't bother with levels of detail
+        copy.skipDetailLevels = true;
+        return copy;
     }
 
     /**
@@ -358,9 +733,8 @@ public class DrawPath {
         cloned.isClosed = isClosed;
         cloned.appearance = appearance.clone();
         // 2. Copy points.
-        for (Point point : points) {
-            cloned.points.add(point.clone());
-        }
+        cloned.points = points.copy();
+        cloned.setTransform(transform);
         cloned.cachePath();
         return cloned;
     }
@@ -0,0 +1,308 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+import java.util.Arrays;
+
+import io.github.pastthepixels.freepaint.Utils;
+
+/**
+ * A DrawPath flattened into straight edges, for answering "is this point inside the path?" without
+ * <code>Path.op</code>. Curves are split into lines (close enough that you can't tell the difference), then a point
+ * is checked against the bounding box and, if it's inside that, counted with the winding number rule (the same
+ * rule Android uses to fill paths, so it agrees with what's drawn). Every subpath is treated as closed, like when
+ * filling.
+ * <p>
+ * Big polygons (ex. a long eraser stroke) are also cut into horizontal bands, each with a list of the edges that
+ * cross it, so a point only has to be checked against the edges in its band.
+ * <p>
+ * Made once by <code>DrawPath.getFlattenedPath</code> and cached until the points change; it's never changed after
+ * it's made, so it can be used from any thread.
+ */
+public class FlattenedPath {
+    /**
+     * How far (in document pixels) the lines can be from the real curves
+     */
+    private static final float FLATNESS = 0.25f;
+
+    /**
+     * Polygons with fewer edges than this aren't split into bands, since checking every edge is already fast
+     */
+    private static final int BAND_MIN_EDGES = 32;
+
+    /**
+     * About how many edges go into each band
+     */
+    private static final int EDGES_PER_BAND = 4;
+
+    private static final int MAX_BANDS = 1024;
+
+    /**
+     * Edges as (x0, y0, x1, y1). Horizontal edges never change the winding number, but they're kept for
+     * <code>intersectSegment</code>.
+     */
+    private float[] edges = new float[64];
+    private int edgeCount = 0;
+
+    private float left = Float.POSITIVE_INFINITY;
+    private float top = Float.POSITIVE_INFINITY;
+    private float right = Float.NEGATIVE_INFINITY;
+    private float bottom = Float.NEGATIVE_INFINITY;
+
+    // Bands (null if there are too few edges): the edges of band b are bandEdges[bandStarts[b]] up to
+    // bandEdges[bandStarts[b + 1]]
+    private int bandCount = 0;
+    private float bandScale;
+    private int[] bandStarts;
+    private int[] bandEdges;
+
+    /**
+     * Flattens a list of points, drawn the same way as <code>DrawPath.generatePath</code>.
+     *
+     * @param points The points of a DrawPath
+     */
+    public FlattenedPath(PointBuffer points) {
+        int subpathStart = 0;
+        for (int i = 1; i <= points.size(); i++) {
+            if (i == points.size() || points.getCommand(i) == Point.COMMANDS.move) {
+                // Closes the subpath
+                addEdge(points.getX(i - 1), points.getY(i - 1), points.getX(subpathStart), points.getY(subpathStart));
+                subpathStart = i;
+            } else {
+                addCubic(points, i);
+            }
+        }
+        for (int i = 0; i < points.size(); i++) {
+            left = Math.min(left, points.getX(i));
+            top = Math.min(top, points.getY(i));
+            right = Math.max(right, points.getX(i));
+            bottom = Math.max(bottom, points.getY(i));
+        }
+        if (edgeCount >= BAND_MIN_EDGES) {
+            buildBands();
+        }
+    }
+
+    /**
+     * Whether a point is inside the path (with the nonzero winding rule).
+     */
+    public boolean contains(float x, float y) {
+        if (!(x >= left && x <= right && y >= top && y <= bottom)) {
+            return false;
+        }
+        int winding = 0;
+        if (bandCount == 0) {
+            for (int i = 0; i < edgeCount; i++) {
+                winding += crossing(i, x, y);
+            }
+        } else {
+            int band = getBand(y);
+            for (int i = bandStarts[band]; i < bandStarts[band + 1]; i++) {
+                winding += crossing(bandEdges[i], x, y);
+            }
+        }
+        return winding != 0;
+    }
+
+    /**
+     * @return How many edges there are
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * @return The edges as (x0, y0, x1, y1), in the order they're drawn. Only the first <code>getEdgeCount() * 4</code>
+     * floats are used, and the array must not be changed.
+     */
+    float[] getEdges() {
+        return edges;
+    }
+
+    /**
+     * @return Whether the bounding boxes of two flattened paths overlap
+     */
+    public boolean boundsIntersect(FlattenedPath other) {
+        return left <= other.right && other.left <= right && top <= other.bottom && other.top <= bottom;
+    }
+
+    /**
+     * Finds everywhere a line segment crosses the outline of the path.
+     *
+     * @param out Where to put how far along the segment (from 0 to 1) each crossing is, sorted, with no repeats.
+     *            If it's too small, nothing is written and the number of crossings is still returned, so the
+     *            caller can try again with a bigger array.
+     * @return How many crossings there are
+     */
+    public int intersectSegment(float x0, float y0, float x1, float y1, float[] out) {
+        if (Math.max(x0, x1) < left || Math.min(x0, x1) > right || Math.max(y0, y1) < top || Math.min(y0, y1) > bottom) {
+            return 0;
+        }
+        int count = 0;
+        if (bandCount == 0) {
+            for (int i = 0; i < edgeCount; i++) {
+                count = addIntersection(i, x0, y0, x1, y1, out, count);
+            }
+        } else {
+            // Edges can be in more than one band, so the same crossing can be found more than once
+            int lastBand = getBand(Math.max(y0, y1));
+            for (int band = getBand(Math.min(y0, y1)); band <= lastBand; band++) {
+                for (int i = bandStarts[band]; i < bandStarts[band + 1]; i++) {
+                    count = addIntersection(bandEdges[i], x0, y0, x1, y1, out, count);
+                }
+            }
+        }
+        if (count > out.length) {
+            return count;
+        }
+        Arrays.sort(out, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || out[i] != out[unique - 1]) {
+                out[unique++] = out[i];
+            }
+        }
+        return unique;
+    }
+
+    private int addIntersection(int edge, float x0, float y0, float x1, float y1, float[] out, int count) {
+        float t = Utils.segmentIntersection(x0, y0, x1, y1,
+                edges[edge * 4], edges[edge * 4 + 1], edges[edge * 4 + 2], edges[edge * 4 + 3]);
+        if (Float.isNaN(t)) {
+            return count;
+        }
+        if (count < out.length) {
+            out[count] = t;
+        }
+        return count + 1;
+    }
+
+    /**
+     * How much an edge changes the winding number of a point: a ray going right from the point crosses edges going
+     * up (+1) or down (-1). Each edge includes its top end but not its bottom end, so a ray through a vertex only
+     * crosses one of the two edges there.
+     */
+    private int crossing(int edge, float x, float y) {
+        float x0 = edges[edge * 4];
+        float y0 = edges[edge * 4 + 1];
+        float x1 = edges[edge * 4 + 2];
+        float y1 = edges[edge * 4 + 3];
+        // Which side of the edge the point is on (positive = left, when going from 0 to 1)
+        float side = (x1 - x0) * (y - y0) - (x - x0) * (y1 - y0);
+        if (y0 <= y) {
+            if (y1 > y && side > 0) {
+                return 1;
+            }
+        } else if (y1 <= y && side < 0) {
+            return -1;
+        }
+        return 0;
+    }
+
+    /**
+     * Adds the curve that ends at point <code>i</code>, split into as many lines as it needs
+     */
+    private void addCubic(PointBuffer points, int i) {
+        int segments = segmentCount(points, i, FLATNESS);
+        float previousX = points.getX(i - 1);
+        float previousY = points.getY(i - 1);
+        for (int step = 1; step < segments; step++) {
+            float t = step / (float) segments;
+            float x = evaluateX(points, i, t);
+            float y = evaluateY(points, i, t);
+            addEdge(previousX, previousY, x, y);
+            // Handles can stick out past the points, so the bounds include every vertex
+            left = Math.min(left, x);
+            top = Math.min(top, y);
+            right = Math.max(right, x);
+            bottom = Math.max(bottom, y);
+            previousX = x;
+            previousY = y;
+        }
+        addEdge(previousX, previousY, points.getX(i), points.getY(i));
+    }
+
+    /**
+     * Finds how many lines the curve that ends at point <code>i</code> has to be split into to stay within
+     * <code>flatness</code> of it (with Wang's formula). Points without handles (ex. after erasing a filled shape)
+     * are joined by straight lines, so those are always 1.
+     */
+    static int segmentCount(PointBuffer points, int i, float flatness) {
+        float x0 = points.getX(i - 1);
+        float y0 = points.getY(i - 1);
+        float x1 = points.getRightHandleX(i - 1);
+        float y1 = points.getRightHandleY(i - 1);
+        float x2 = points.getLeftHandleX(i);
+        float y2 = points.getLeftHandleY(i);
+        float x3 = points.getX(i);
+        float y3 = points.getY(i);
+        if (x1 == x0 && y1 == y0 && x2 == x3 && y2 == y3) {
+            return 1;
+        }
+        float ddx = Math.max(Math.abs(x0 - 2 * x1 + x2), Math.abs(x1 - 2 * x2 + x3));
+        float ddy = Math.max(Math.abs(y0 - 2 * y1 + y2), Math.abs(y1 - 2 * y2 + y3));
+        return Math.max(1, (int) Math.ceil(Math.sqrt(0.75 * Math.hypot(ddx, ddy) / flatness)));
+    }
+
+    /**
+     * @return The x coordinate at <code>t</code> (from 0 to 1) on the curve that ends at point <code>i</code>
+     */
+    static float evaluateX(PointBuffer points, int i, float t) {
+        return evaluate(points.getX(i - 1), points.getRightHandleX(i - 1), points.getLeftHandleX(i), points.getX(i), t);
+    }
+
+    /**
+     * @return The y coordinate at <code>t</code> (from 0 to 1) on the curve that ends at point <code>i</code>
+     */
+    static float evaluateY(PointBuffer points, int i, float t) {
+        return evaluate(points.getY(i - 1), points.getRightHandleY(i - 1), points.getLeftHandleY(i), points.getY(i), t);
+    }
+
+    private static float evaluate(float p0, float p1, float p2, float p3, float t) {
+        float mt = 1 - t;
+        return mt * mt * mt * p0 + 3 * mt * mt * t * p1 + 3 * mt * t * t * p2 + t * t * t * p3;
+    }
+
+    private void addEdge(float x0, float y0, float x1, float y1) {
+        if (x0 == x1 && y0 == y1) {
+            return;
+        }
+        if (edges.length < (edgeCount + 1) * 4) {
+            edges = Arrays.copyOf(edges, edges.length * 2);
+        }
+        edges[edgeCount * 4] = x0;
+        edges[edgeCount * 4 + 1] = y0;
+        edges[edgeCount * 4 + 2] = x1;
+        edges[edgeCount * 4 + 3] = y1;
+        edgeCount++;
+    }
+
+    /**
+     * Sorts the edges into bands (an edge goes in every band it touches).
+     */
+    private void buildBands() {
+        bandCount = Math.min(MAX_BANDS, edgeCount / EDGES_PER_BAND);
+        bandScale = bandCount / (bottom - top);
+        bandStarts = new int[bandCount + 1];
+        // Counts the edges in each band, then turns the counts into where each band starts
+        for (int i = 0; i < edgeCount; i++) {
+            int last = getBand(Math.max(edges[i * 4 + 1], edges[i * 4 + 3]));
+            for (int band = getBand(Math.min(edges[i * 4 + 1], edges[i * 4 + 3])); band <= last; band++) {
+                bandStarts[band + 1]++;
+            }
+        }
+        for (int band = 0; band < bandCount; band++) {
+            bandStarts[band + 1] += bandStarts[band];
+        }
+        bandEdges = new int[bandStarts[bandCount]];
+        int[] filled = new int[bandCount];
+        for (int i = 0; i < edgeCount; i++) {
+            int last = getBand(Math.max(edges[i * 4 + 1], edges[i * 4 + 3]));
+            for (int band = getBand(Math.min(edges[i * 4 + 1], edges[i * 4 + 3])); band <= last; band++) {
+                bandEdges[bandStarts[band] + filled[band]++] = i;
+            }
+        }
+    }
+
+    private int getBand(float y) {
+        return Math.max(0, Math.min(bandCount - 1, (int) ((y - top) * bandScale)));
+    }
+}
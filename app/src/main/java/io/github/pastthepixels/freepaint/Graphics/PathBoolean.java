@@ -0,0 +1,339 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+import android.graphics.Color;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Boolean operations on closed paths, done on our own geometry instead of with <code>Path.op</code>, so curves can
+ * be kept and it can be tested without Android.
+ * <p>
+ * This works like the Martinez-Rueda algorithm, without the sweep line for classifying edges:
+ * <ol>
+ * <li>Both paths are flattened (see <code>FlattenedPath</code>, which adds more lines where curves bend more).</li>
+ * <li>Every edge is split wherever it crosses another edge (of either path), so no two edges cross anymore.
+ * Crossings are found by sorting the edges by their left end and sweeping from left to right.</li>
+ * <li>Each piece of an edge is kept if the result is on one side of it and not the other, which is checked just to
+ * each side of its midpoint with the winding rule. Kept pieces are turned so the result is on their left.</li>
+ * <li>Kept pieces are joined end to end into closed outlines. Since every piece has the result on its left, the
+ * outlines fill exactly the result with the winding rule however they're joined.</li>
+ * <li>Each outline is turned back into curves with a <code>CurveFitter</code>.</li>
+ * </ol>
+ * If the paths' bounding boxes don't overlap, or the operation doesn't change anything, the original path is kept
+ * as it is.
+ */
+public class PathBoolean {
+    /**
+     * How far the outlines can be from the flattened result when they're fit with curves, in document pixels
+     */
+    private static final double FIT_TOLERANCE = 0.5;
+
+    /**
+     * How far to each side of an edge (in document pixels) to check whether the result is there
+     */
+    private static final double SIDE_OFFSET = 0.01;
+
+    /**
+     * Crossings this close to the end of an edge (as a fraction of its length) are treated as being at the end
+     */
+    private static final double END_TOLERANCE = 1e-9;
+
+    // Every edge of both paths (subject first), split into pieces as crossings are found
+    private final int subjectEdges;
+    private final int edgeCount;
+    private final double[] edges;
+
+    // Where each edge is split: linked lists (by edge) of how far along it, and where
+    private final int[] firstSplit;
+    private int[] nextSplit = new int[16];
+    private double[] splitT = new double[16];
+    private double[] splitX = new double[16];
+    private double[] splitY = new double[16];
+    private int splitCount = 0;
+
+    // Pieces of edges that are kept, as (x0, y0, x1, y1) with the result on their left
+    private double[] kept = new double[64];
+    private int keptCount = 0;
+
+    private PathBoolean(FlattenedPath subject, FlattenedPath clip) {
+        subjectEdges = subject.getEdgeCount();
+        edgeCount = subjectEdges + clip.getEdgeCount();
+        edges = new double[edgeCount * 4];
+        float[] subjectCoordinates = subject.getEdges();
+        for (int i = 0; i < subjectEdges * 4; i++) {
+            edges[i] = subjectCoordinates[i];
+        }
+        float[] clipCoordinates = clip.getEdges();
+        for (int i = 0; i < clip.getEdgeCount() * 4; i++) {
+            edges[subjectEdges * 4 + i] = clipCoordinates[i];
+        }
+        firstSplit = new int[edgeCount];
+        Arrays.fill(firstSplit, -1);
+    }
+
+    /**
+     * Erases one closed path from another.
+     *
+     * @param subject The path to erase from
+     * @param clip    The path to erase
+     * @param out     Cleared, then filled with the points of the result (one subpath per outline, fit with curves)
+     * @return Whether anything was erased. If not, <code>out</code> is left empty and the subject should be kept.
+     */
+    public static boolean difference(FlattenedPath subject, FlattenedPath clip, PointBuffer out) {
+        out.clear();
+        // Fast path: nothing to erase
+        if (!subject.boundsIntersect(clip)) {
+            return false;
+        }
+        PathBoolean operation = new PathBoolean(subject, clip);
+        operation.splitCrossings();
+        if (!operation.classify(subject, clip)) {
+            return false;
+        }
+        operation.connect(out);
+        return true;
+    }
+
+    /**
+     * Finds every place two edges cross, and adds a split to both of them there.
+     */
+    private void splitCrossings() {
+        // Sorts edges by their left end (packed with their index so we can sort longs)
+        long[] order = new long[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            order[i] = ((long) sortable((float) Math.min(edges[i * 4], edges[i * 4 + 2])) << 32) | i;
+        }
+        Arrays.sort(order);
+        // Sweeps from left to right, keeping a list of edges that the sweep line is on
+        int[] active = new int[16];
+        int activeCount = 0;
+        for (long entry : order) {
+            int edge = (int) entry;
+            double left = Math.min(edges[edge * 4], edges[edge * 4 + 2]);
+            double top = Math.min(edges[edge * 4 + 1], edges[edge * 4 + 3]);
+            double bottom = Math.max(edges[edge * 4 + 1], edges[edge * 4 + 3]);
+            int stillActive = 0;
+            for (int i = 0; i < activeCount; i++) {
+                int other = active[i];
+                if (Math.max(edges[other * 4], edges[other * 4 + 2]) < left) {
+                    continue;
+                }
+                active[stillActive++] = other;
+                if (Math.max(edges[other * 4 + 1], edges[other * 4 + 3]) >= top
+                        && Math.min(edges[other * 4 + 1], edges[other * 4 + 3]) <= bottom) {
+                    intersect(other, edge);
+                }
+            }
+            activeCount = stillActive;
+            if (activeCount == active.length) {
+                active = Arrays.copyOf(active, active.length * 2);
+            }
+            active[activeCount++] = edge;
+        }
+    }
+
+    /**
+     * Splits two edges where they cross (or where one ends on the other).
+     */
+    private void intersect(int a, int b) {
+        double ax = edges[a * 4], ay = edges[a * 4 + 1];
+        double rx = edges[a * 4 + 2] - ax, ry = edges[a * 4 + 3] - ay;
+        double bx = edges[b * 4], by = edges[b * 4 + 1];
+        double sx = edges[b * 4 + 2] - bx, sy = edges[b * 4 + 3] - by;
+        double qx = bx - ax, qy = by - ay;
+        double denominator = rx * sy - ry * sx;
+        double lengthA = Math.hypot(rx, ry);
+        double lengthB = Math.hypot(sx, sy);
+        if (Math.abs(denominator) <= 1e-12 * lengthA * lengthB) {
+            // Parallel: if they're on the same line, each one is split where the other one ends
+            if (Math.abs(qx * ry - qy * rx) <= 1e-9 * lengthA * lengthA) {
+                addSplit(a, (qx * rx + qy * ry) / (lengthA * lengthA), bx, by);
+                addSplit(a, ((qx + sx) * rx + (qy + sy) * ry) / (lengthA * lengthA), bx + sx, by + sy);
+                addSplit(b, (-qx * sx - qy * sy) / (lengthB * lengthB), ax, ay);
+                addSplit(b, ((rx - qx) * sx + (ry - qy) * sy) / (lengthB * lengthB), ax + rx, ay + ry);
+            }
+            return;
+        }
+        double t = (qx * sy - qy * sx) / denominator;
+        double u = (qx * ry - qy * rx) / denominator;
+        if (t < -END_TOLERANCE || t > 1 + END_TOLERANCE || u < -END_TOLERANCE || u > 1 + END_TOLERANCE) {
+            return;
+        }
+        // If the crossing is at the end of one edge, uses that exact point, so the pieces join up later
+        double x, y;
+        if (t <= END_TOLERANCE || t >= 1 - END_TOLERANCE) {
+            x = t <= END_TOLERANCE ? ax : ax + rx;
+            y = t <= END_TOLERANCE ? ay : ay + ry;
+        } else if (u <= END_TOLERANCE || u >= 1 - END_TOLERANCE) {
+            x = u <= END_TOLERANCE ? bx : bx + sx;
+            y = u <= END_TOLERANCE ? by : by + sy;
+        } else {
+            x = ax + rx * t;
+            y = ay + ry * t;
+        }
+        addSplit(a, t, x, y);
+        addSplit(b, u, x, y);
+    }
+
+    /**
+     * Adds a split to an edge, unless it's at (or past) one of its ends.
+     */
+    private void addSplit(int edge, double t, double x, double y) {
+        if (t <= END_TOLERANCE || t >= 1 - END_TOLERANCE) {
+            return;
+        }
+        if (splitCount == splitT.length) {
+            int capacity = splitCount * 2;
+            nextSplit = Arrays.copyOf(nextSplit, capacity);
+            splitT = Arrays.copyOf(splitT, capacity);
+            splitX = Arrays.copyOf(splitX, capacity);
+            splitY = Arrays.copyOf(splitY, capacity);
+        }
+        splitT[splitCount] = t;
+        splitX[splitCount] = x;
+        splitY[splitCount] = y;
+        nextSplit[splitCount] = firstSplit[edge];
+        firstSplit[edge] = splitCount;
+        splitCount++;
+    }
+
+    /**
+     * Cuts every edge into pieces at its splits, and keeps the pieces that are on the outline of the result.
+     *
+     * @return Whether the result is different from the subject
+     */
+    private boolean classify(FlattenedPath subject, FlattenedPath clip) {
+        boolean changed = false;
+        int[] splits = new int[16];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            // Gets this edge's splits, sorted along it
+            int count = 0;
+            for (int split = firstSplit[edge]; split != -1; split = nextSplit[split]) {
+                if (count == splits.length) {
+                    splits = Arrays.copyOf(splits, count * 2);
+                }
+                int position = count++;
+                while (position > 0 && splitT[splits[position - 1]] > splitT[split]) {
+                    splits[position] = splits[position - 1];
+                    position--;
+                }
+                splits[position] = split;
+            }
+            double startX = edges[edge * 4];
+            double startY = edges[edge * 4 + 1];
+            for (int i = 0; i <= count; i++) {
+                double endX = i == count ? edges[edge * 4 + 2] : splitX[splits[i]];
+                double endY = i == count ? edges[edge * 4 + 3] : splitY[splits[i]];
+                if (endX == startX && endY == startY) {
+                    continue;
+                }
+                // Checks each side of the middle of the piece
+                double length = Math.hypot(endX - startX, endY - startY);
+                double normalX = -(endY - startY) / length * SIDE_OFFSET;
+                double normalY = (endX - startX) / length * SIDE_OFFSET;
+                double middleX = (startX + endX) / 2;
+                double middleY = (startY + endY) / 2;
+                boolean left = inResult(subject, clip, middleX + normalX, middleY + normalY);
+                boolean right = inResult(subject, clip, middleX - normalX, middleY - normalY);
+                boolean fromSubject = edge < subjectEdges;
+                if (left != right) {
+                    if (left) {
+                        keep(startX, startY, endX, endY);
+                    } else {
+                        keep(endX, endY, startX, startY);
+                    }
+                    changed |= !fromSubject;
+                } else {
+                    changed |= fromSubject;
+                }
+                startX = endX;
+                startY = endY;
+            }
+        }
+        return changed;
+    }
+
+    private static boolean inResult(FlattenedPath subject, FlattenedPath clip, double x, double y) {
+        return subject.contains((float) x, (float) y) && !clip.contains((float) x, (float) y);
+    }
+
+    private void keep(double x0, double y0, double x1, double y1) {
+        if (kept.length < (keptCount + 1) * 4) {
+            kept = Arrays.copyOf(kept, kept.length * 2);
+        }
+        kept[keptCount * 4] = x0;
+        kept[keptCount * 4 + 1] = y0;
+        kept[keptCount * 4 + 2] = x1;
+        kept[keptCount * 4 + 3] = y1;
+        keptCount++;
+    }
+
+    /**
+     * Joins the kept pieces into outlines, fits each one with curves, and adds them to <code>out</code>.
+     */
+    private void connect(PointBuffer out) {
+        // Pieces by where they start (the ones starting at the same point are chained with nextFrom)
+        HashMap<Long, Integer> firstFrom = new HashMap<>();
+        int[] nextFrom = new int[keptCount];
+        for (int i = keptCount - 1; i >= 0; i--) {
+            Integer first = firstFrom.put(key(kept[i * 4], kept[i * 4 + 1]), i);
+            nextFrom[i] = first == null ? -1 : first;
+        }
+        boolean[] used = new boolean[keptCount];
+        CurveFitter fitter = new CurveFitter();
+        PointBuffer outline = new PointBuffer();
+        PointBuffer fitted = new PointBuffer();
+        for (int start = 0; start < keptCount; start++) {
+            if (used[start]) {
+                continue;
+            }
+            // Follows pieces until we get back to where we started (or run out)
+            outline.clear();
+            outline.add((float) kept[start * 4], (float) kept[start * 4 + 1], Point.COMMANDS.move, Color.WHITE);
+            long startKey = key(kept[start * 4], kept[start * 4 + 1]);
+            int piece = start;
+            while (piece != -1) {
+                used[piece] = true;
+                outline.add((float) kept[piece * 4 + 2], (float) kept[piece * 4 + 3], Point.COMMANDS.line, Color.WHITE);
+                long endKey = key(kept[piece * 4 + 2], kept[piece * 4 + 3]);
+                if (endKey == startKey) {
+                    break;
+                }
+                Integer next = firstFrom.get(endKey);
+                piece = next == null ? -1 : next;
+                while (piece != -1 && used[piece]) {
+                    piece = nextFrom[piece];
+                }
+            }
+            // Outlines need at least three corners to have any area
+            if (outline.size() < 4) {
+                continue;
+            }
+            fitter.fit(outline, FIT_TOLERANCE, fitted);
+            for (int i = 0; i < fitted.size(); i++) {
+                float x = fitted.getX(i);
+                float y = fitted.getY(i);
+                out.add(x, y, fitted.getCommand(i), fitted.getColor(i));
+                out.setHandles(out.size() - 1,
+                        fitted.getLeftHandleX(i) - x, fitted.getLeftHandleY(i) - y,
+                        fitted.getRightHandleX(i) - x, fitted.getRightHandleY(i) - y);
+            }
+        }
+    }
+
+    /**
+     * Packs a point into a long, so pieces that meet (which always have exactly the same coordinates) can be found
+     */
+    private static long key(double x, double y) {
+        return ((long) Float.floatToIntBits((float) x) << 32) | (Float.floatToIntBits((float) y) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Turns a float into an int that sorts in the same order
+     */
+    private static int sortable(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import io.github.pastthepixels.freepaint.History.PersistentVector;
+
+/**
+ * Draws the paths in the document over themselves in a highlight color (see <code>Tool.highlightsPaths</code>):
+ * filled shapes are filled in, and strokes are drawn with a thin line and their points.
+ * <p>
+ * This draws straight from <code>DrawCanvas.paths</code> with the same two Paints for every path, so tools don't
+ * have to build a styled copy of each path whenever the document changes.
+ */
+public class PathHighlighter {
+    public static final int HIGHLIGHT_COLOR = Color.GREEN;
+
+    /**
+     * Width of highlighted strokes, in dp
+     */
+    private static final float STROKE_WIDTH = 1;
+
+    private final Paint fillPaint = new Paint();
+    private final Paint strokePaint = new Paint();
+
+    public PathHighlighter() {
+        fillPaint.setAntiAlias(true);
+        fillPaint.setColor(HIGHLIGHT_COLOR);
+        fillPaint.setStyle(Paint.Style.FILL);
+        strokePaint.setAntiAlias(true);
+        strokePaint.setColor(HIGHLIGHT_COLOR);
+        strokePaint.setStyle(Paint.Style.STROKE);
+        strokePaint.setStrokeJoin(Paint.Join.ROUND);
+        strokePaint.setStrokeCap(Paint.Cap.ROUND);
+    }
+
+    /**
+     * Highlights every path in an area.
+     *
+     * @param canvas        The canvas to draw to, already scaled/translated to document coordinates
+     * @param paths         The paths in the document
+     * @param index         Spatial index of <code>paths</code>
+     * @param viewport      The part of the document on the screen -- paths outside of it are skipped
+     * @param points        Points of open paths are added here, so the caller should draw it afterwards
+     * @param screenDensity Screen density from the display metrics
+     * @param scaleFactor   The scale factor of the canvas
+     */
+    public void draw(Canvas canvas, PersistentVector<DrawPath> paths, SpatialIndex index, RectF viewport,
+                     PointOverlay points, float screenDensity, float scaleFactor) {
+        strokePaint.setStrokeWidth(STROKE_WIDTH * screenDensity / scaleFactor);
+        int count = index.query(viewport);
+        for (int i = 0; i < count; i++) {
+            DrawPath path = paths.get(index.getResult(i));
+            if (path.getPath() == null) {
+                continue;
+            }
+            if (path.getTransform() != null) {
+                canvas.save();
+                canvas.concat(path.getTransform());
+            }
+            if (path.isClosed) {
+                canvas.drawPath(path.getPathForScale(scaleFactor), fillPaint);
+            } else {
+                canvas.drawPath(path.getPathForScale(scaleFactor), strokePaint);
+            }
+            if (path.getTransform() != null) {
+                canvas.restore();
+            }
+            if (!path.isClosed) {
+                points.add(path);
+            }
+        }
+    }
+}
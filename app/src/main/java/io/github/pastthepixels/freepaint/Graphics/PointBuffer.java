@@ -0,0 +1,370 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+import androidx.annotation.NonNull;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * The points of a DrawPath, packed into parallel primitive arrays (one array per field) instead of one Point object
+ * (plus two handle Points) per point. A point takes 29 bytes this way instead of about 100, copying a path is a few
+ * <code>Arrays.copyOf</code>s, and loops over the coordinates don't chase pointers.
+ * <p>
+ * Code that wants Points can still use this as a <code>List&lt;Point&gt;</code>, but <code>get</code> makes a new
+ * Point each time, and <b>changing that Point doesn't change the buffer</b> -- use <code>set</code> or the
+ * primitive setters. Hot loops should use the primitive getters (<code>getX</code>, <code>getY</code>, ...) instead.
+ * Handles are stored relative to their point, like in <code>Point.setLeftHandle</code>.
+ */
+public class PointBuffer extends AbstractList<Point> implements RandomAccess {
+    private static final Point.COMMANDS[] COMMANDS = Point.COMMANDS.values();
+
+    /**
+     * Bytes used by each point: six floats, a color and a command
+     */
+    private static final int BYTES_PER_POINT = 6 * 4 + 4 + 1;
+
+    private float[] x;
+    private float[] y;
+    private float[] leftX;
+    private float[] leftY;
+    private float[] rightX;
+    private float[] rightY;
+    private int[] color;
+    private byte[] command;
+    private int size = 0;
+
+    /**
+     * Makes an empty buffer.
+     */
+    public PointBuffer() {
+        this(16);
+    }
+
+    /**
+     * Makes an empty buffer with room for some points.
+     *
+     * @param capacity How many points it can hold before it has to grow
+     */
+    public PointBuffer(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    /**
+     * Makes a buffer with a copy of some points.
+     *
+     * @param points The points
+     */
+    public PointBuffer(Collection<Point> points) {
+        this(points.size());
+        addAll(points);
+    }
+
+    /**
+     * Copy constructor -- this just copies the arrays.
+     */
+    private PointBuffer(PointBuffer other) {
+        size = other.size;
+        int capacity = Math.max(size, 1);
+        x = Arrays.copyOf(other.x, capacity);
+        y = Arrays.copyOf(other.y, capacity);
+        leftX = Arrays.copyOf(other.leftX, capacity);
+        leftY = Arrays.copyOf(other.leftY, capacity);
+        rightX = Arrays.copyOf(other.rightX, capacity);
+        rightY = Arrays.copyOf(other.rightY, capacity);
+        color = Arrays.copyOf(other.color, capacity);
+        command = Arrays.copyOf(other.command, capacity);
+    }
+
+    /**
+     * @return A copy of this buffer (nothing is shared, so changing one doesn't change the other)
+     */
+    public PointBuffer copy() {
+        return new PointBuffer(this);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Makes a Point with the values of a point in the buffer. Changing it doesn't change the buffer.
+     *
+     * @param index The index of the point
+     * @return A new Point
+     */
+    @Override
+    public Point get(int index) {
+        checkIndex(index);
+        Point point = new Point(x[index], y[index], COMMANDS[command[index]], color[index]);
+        point.setLeftHandle(new Point(leftX[index], leftY[index]));
+        point.setRightHandle(new Point(rightX[index], rightY[index]));
+        return point;
+    }
+
+    @Override
+    public Point set(int index, Point point) {
+        Point old = get(index);
+        write(index, point);
+        return old;
+    }
+
+    @Override
+    public void add(int index, Point point) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        if (size == x.length) {
+            allocate(size * 2);
+        }
+        if (index < size) {
+            shift(index, index + 1, size - index);
+        }
+        size++;
+        modCount++;
+        write(index, point);
+    }
+
+    @Override
+    public Point remove(int index) {
+        Point old = get(index);
+        shift(index + 1, index, size - index - 1);
+        size--;
+        modCount++;
+        return old;
+    }
+
+    /**
+     * Removes a point without making a Point for it.
+     *
+     * @param index The index of the point
+     */
+    public void removeAt(int index) {
+        checkIndex(index);
+        shift(index + 1, index, size - index - 1);
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Removes every point the last call to <code>simplifier.simplify</code> threw away, in one pass (so removing lots
+     * of points is linear instead of shifting every array once per point).
+     *
+     * @param simplifier A Simplifier that was just given these points (at least <code>size()</code> of them)
+     */
+    public void retain(Simplifier simplifier) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (simplifier.isKept(i)) {
+                if (kept != i) {
+                    shift(i, kept, 1);
+                }
+                kept++;
+            }
+        }
+        if (kept != size) {
+            size = kept;
+            modCount++;
+        }
+    }
+
+    /**
+     * Adds a point with no handles, without needing a Point for it.
+     */
+    public void add(float x, float y, Point.COMMANDS command, int color) {
+        if (size == this.x.length) {
+            allocate(size * 2);
+        }
+        this.x[size] = x;
+        this.y[size] = y;
+        this.command[size] = (byte) command.ordinal();
+        this.color[size] = color;
+        setHandles(size, 0, 0, 0, 0);
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    public float getX(int index) {
+        return x[index];
+    }
+
+    public float getY(int index) {
+        return y[index];
+    }
+
+    public int getColor(int index) {
+        return color[index];
+    }
+
+    public Point.COMMANDS getCommand(int index) {
+        return COMMANDS[command[index]];
+    }
+
+    public void setCommand(int index, Point.COMMANDS command) {
+        this.command[index] = (byte) command.ordinal();
+    }
+
+    /**
+     * @return The x coordinate of the left handle, in global space
+     */
+    public float getLeftHandleX(int index) {
+        return x[index] + leftX[index];
+    }
+
+    /**
+     * @return The y coordinate of the left handle, in global space
+     */
+    public float getLeftHandleY(int index) {
+        return y[index] + leftY[index];
+    }
+
+    /**
+     * @return The x coordinate of the right handle, in global space
+     */
+    public float getRightHandleX(int index) {
+        return x[index] + rightX[index];
+    }
+
+    /**
+     * @return The y coordinate of the right handle, in global space
+     */
+    public float getRightHandleY(int index) {
+        return y[index] + rightY[index];
+    }
+
+    /**
+     * Sets the handles of a point.
+     *
+     * @param index  The index of the point
+     * @param leftX  Left handle, relative to the point
+     * @param leftY  Left handle, relative to the point
+     * @param rightX Right handle, relative to the point
+     * @param rightY Right handle, relative to the point
+     */
+    public void setHandles(int index, float leftX, float leftY, float rightX, float rightY) {
+        this.leftX[index] = leftX;
+        this.leftY[index] = leftY;
+        this.rightX[index] = rightX;
+        this.rightY[index] = rightY;
+    }
+
+    /**
+     * Sets the left handle of a point, relative to the point.
+     */
+    public void setLeftHandle(int index, float x, float y) {
+        leftX[index] = x;
+        leftY[index] = y;
+    }
+
+    /**
+     * Sets the right handle of a point, relative to the point.
+     */
+    public void setRightHandle(int index, float x, float y) {
+        rightX[index] = x;
+        rightY[index] = y;
+    }
+
+    /**
+     * Moves every point (handles are relative, so they move with them).
+     */
+    public void translate(float dx, float dy) {
+        for (int i = 0; i < size; i++) {
+            x[i] += dx;
+            y[i] += dy;
+        }
+    }
+
+    /**
+     * Transforms every point with an affine matrix (in the order <code>Matrix.getValues</code> uses), so
+     * <code>x' = scaleX * x + skewX * y + translateX</code> and <code>y' = skewY * x + scaleY * y + translateY</code>.
+     * Handles are relative, so they only get scaled/skewed.
+     */
+    public void transform(float scaleX, float skewX, float translateX, float skewY, float scaleY, float translateY) {
+        for (int i = 0; i < size; i++) {
+            float px = x[i];
+            float py = y[i];
+            x[i] = scaleX * px + skewX * py + translateX;
+            y[i] = skewY * px + scaleY * py + translateY;
+            float hx = leftX[i];
+            float hy = leftY[i];
+            leftX[i] = scaleX * hx + skewX * hy;
+            leftY[i] = skewY * hx + scaleY * hy;
+            hx = rightX[i];
+            hy = rightY[i];
+            rightX[i] = scaleX * hx + skewX * hy;
+            rightY[i] = skewY * hx + scaleY * hy;
+        }
+    }
+
+    /**
+     * @return Roughly how many bytes the buffer takes up in memory
+     */
+    public long estimateSize() {
+        // Object headers for the buffer and its eight arrays
+        return 9 * 16 + (long) x.length * BYTES_PER_POINT;
+    }
+
+    private void write(int index, @NonNull Point point) {
+        x[index] = point.x;
+        y[index] = point.y;
+        color[index] = point.color;
+        command[index] = (byte) point.command.ordinal();
+        // Handles are null for handle points, and equal to the point itself if they aren't set
+        Point left = point.getLeftHandle();
+        Point right = point.getRightHandle();
+        leftX[index] = left == null ? 0 : left.x - point.x;
+        leftY[index] = left == null ? 0 : left.y - point.y;
+        rightX[index] = right == null ? 0 : right.x - point.x;
+        rightY[index] = right == null ? 0 : right.y - point.y;
+    }
+
+    /**
+     * Moves <code>count</code> points from <code>from</code> to <code>to</code> in every array
+     */
+    private void shift(int from, int to, int count) {
+        System.arraycopy(x, from, x, to, count);
+        System.arraycopy(y, from, y, to, count);
+        System.arraycopy(leftX, from, leftX, to, count);
+        System.arraycopy(leftY, from, leftY, to, count);
+        System.arraycopy(rightX, from, rightX, to, count);
+        System.arraycopy(rightY, from, rightY, to, count);
+        System.arraycopy(color, from, color, to, count);
+        System.arraycopy(command, from, command, to, count);
+    }
+
+    private void allocate(int capacity) {
+        if (x == null) {
+            x = new float[capacity];
+            y = new float[capacity];
+            leftX = new float[capacity];
+            leftY = new float[capacity];
+            rightX = new float[capacity];
+            rightY = new float[capacity];
+            color = new int[capacity];
+            command = new byte[capacity];
+        } else {
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            leftX = Arrays.copyOf(leftX, capacity);
+            leftY = Arrays.copyOf(leftY, capacity);
+            rightX = Arrays.copyOf(rightX, capacity);
+            rightY = Arrays.copyOf(rightY, capacity);
+            color = Arrays.copyOf(color, capacity);
+            command = Arrays.copyOf(command, capacity);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+}
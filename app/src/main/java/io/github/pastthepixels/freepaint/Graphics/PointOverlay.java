@@ -0,0 +1,245 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.os.Build;
+
+import java.util.Arrays;
+
+/**
+ * Draws the points and handles of paths with <code>DrawPath.drawPoints</code> set (ex. the eraser's highlights).
+ * <p>
+ * Instead of making and drawing a Path for every point and handle, every marker from every path is packed into
+ * reused float arrays: diamonds become two triangles each for one <code>drawVertices</code> call, and outlines/handle
+ * lines go into <code>drawLines</code> calls. So a frame is a few draw calls no matter how many points there are.
+ * Call <code>begin</code>, then <code>add</code> for every path, then <code>draw</code>.
+ */
+public class PointOverlay {
+    /**
+     * Sizes of the markers, in dp
+     */
+    private static final float POINT_SIZE = 6;
+    private static final float HANDLE_SIZE = 4;
+
+    /**
+     * Two triangles (six vertices) per diamond
+     */
+    private float[] vertices = new float[12 * 256];
+    /**
+     * One color per vertex (one per value in <code>vertices</code>, since some Android versions expect that)
+     */
+    private int[] vertexColors = new int[12 * 256];
+    private int vertexCount = 0;
+
+    /**
+     * Black outlines around each point, as pairs of points for drawLines
+     */
+    private float[] outlines = new float[16 * 256];
+    private int outlineCount = 0;
+
+    /**
+     * Lines from each handle to its point, and the color of each line
+     */
+    private float[] handleLines = new float[8 * 256];
+    private int[] handleLineColors = new int[2 * 256];
+    private int handleLineCount = 0;
+
+    private final Paint fillPaint = new Paint();
+    private final Paint linePaint = new Paint();
+
+    /**
+     * Used instead of drawVertices where it isn't supported
+     */
+    private final Path fallbackPath = new Path();
+
+    private float pointSize;
+    private float handleSize;
+
+    /**
+     * Values of the transform of the path being added (see <code>Matrix.getValues</code>)
+     */
+    private final float[] transform = new float[9];
+
+    public PointOverlay() {
+        linePaint.setAntiAlias(true);
+        linePaint.setStyle(Paint.Style.STROKE);
+        fillPaint.setStyle(Paint.Style.FILL);
+    }
+
+    /**
+     * Starts a new frame, throwing away the markers from the last one.
+     */
+    public void begin(float screenDensity, float scaleFactor) {
+        vertexCount = outlineCount = handleLineCount = 0;
+        pointSize = POINT_SIZE * screenDensity / scaleFactor;
+        handleSize = HANDLE_SIZE * screenDensity / scaleFactor;
+        linePaint.setStrokeWidth(screenDensity / scaleFactor);
+    }
+
+    /**
+     * Adds markers for every point in a path (and its handles).
+     *
+     * @param path The path
+     */
+    public void add(DrawPath path) {
+        PointBuffer points = path.points;
+        // Markers go where the points are drawn, so they're moved by the path's transform
+        Matrix matrix = path.getTransform();
+        if (matrix == null) {
+            transform[Matrix.MSCALE_X] = transform[Matrix.MSCALE_Y] = 1;
+            transform[Matrix.MSKEW_X] = transform[Matrix.MSKEW_Y] = transform[Matrix.MTRANS_X] = transform[Matrix.MTRANS_Y] = 0;
+        } else {
+            matrix.getValues(transform);
+        }
+        for (int i = 0; i < points.size(); i++) {
+            float x = mapX(points.getX(i), points.getY(i));
+            float y = mapY(points.getX(i), points.getY(i));
+            float leftX = mapX(points.getLeftHandleX(i), points.getLeftHandleY(i));
+            float leftY = mapY(points.getLeftHandleX(i), points.getLeftHandleY(i));
+            float rightX = mapX(points.getRightHandleX(i), points.getRightHandleY(i));
+            float rightY = mapY(points.getRightHandleX(i), points.getRightHandleY(i));
+            int color = points.getColor(i);
+            addDiamond(x, y, pointSize, color);
+            addOutline(x, y, pointSize);
+            addDiamond(leftX, leftY, handleSize, color);
+            addHandleLine(leftX, leftY, x, y, color);
+            addDiamond(rightX, rightY, handleSize, color);
+            addHandleLine(rightX, rightY, x, y, color);
+        }
+    }
+
+    private float mapX(float x, float y) {
+        return transform[Matrix.MSCALE_X] * x + transform[Matrix.MSKEW_X] * y + transform[Matrix.MTRANS_X];
+    }
+
+    private float mapY(float x, float y) {
+        return transform[Matrix.MSKEW_Y] * x + transform[Matrix.MSCALE_Y] * y + transform[Matrix.MTRANS_Y];
+    }
+
+    /**
+     * Draws every marker added since <code>begin</code>.
+     *
+     * @param canvas The canvas to draw to
+     */
+    public void draw(Canvas canvas) {
+        if (vertexCount == 0) {
+            return;
+        }
+        // Handle lines, then points, then outlines on top
+        drawLines(canvas, handleLines, handleLineColors, handleLineCount);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q && canvas.isHardwareAccelerated()) {
+            drawDiamondsAsPaths(canvas);
+        } else {
+            canvas.drawVertices(Canvas.VertexMode.TRIANGLES, vertexCount * 2, vertices, 0,
+                    null, 0, vertexColors, 0, null, 0, 0, fillPaint);
+        }
+        linePaint.setColor(Color.BLACK);
+        canvas.drawLines(outlines, 0, outlineCount * 4, linePaint);
+    }
+
+    /**
+     * Draws lines, with one drawLines call for each run of lines with the same color.
+     */
+    private void drawLines(Canvas canvas, float[] lines, int[] colors, int count) {
+        int start = 0;
+        for (int i = 1; i <= count; i++) {
+            if (i == count || colors[i] != colors[start]) {
+                linePaint.setColor(colors[start]);
+                canvas.drawLines(lines, start * 4, (i - start) * 4, linePaint);
+                start = i;
+            }
+        }
+    }
+
+    /**
+     * Before Android 10, hardware-accelerated canvases can't drawVertices, so each run of diamonds with the same
+     * color is drawn as one Path.
+     */
+    private void drawDiamondsAsPaths(Canvas canvas) {
+        int start = 0;
+        fallbackPath.rewind();
+        for (int diamond = 0; diamond * 6 < vertexCount; diamond++) {
+            int vertex = diamond * 6;
+            if (vertexColors[vertex] != vertexColors[start]) {
+                fillPaint.setColor(vertexColors[start]);
+                canvas.drawPath(fallbackPath, fillPaint);
+                fallbackPath.rewind();
+                start = vertex;
+            }
+            // The corners are the first three vertices of the first triangle and the last vertex of the second
+            fallbackPath.moveTo(vertices[vertex * 2], vertices[vertex * 2 + 1]);
+            fallbackPath.lineTo(vertices[vertex * 2 + 2], vertices[vertex * 2 + 3]);
+            fallbackPath.lineTo(vertices[vertex * 2 + 4], vertices[vertex * 2 + 5]);
+            fallbackPath.lineTo(vertices[vertex * 2 + 10], vertices[vertex * 2 + 11]);
+            fallbackPath.close();
+        }
+        fillPaint.setColor(vertexColors[start]);
+        canvas.drawPath(fallbackPath, fillPaint);
+    }
+
+    /**
+     * Adds a diamond as two triangles: (top, right, bottom) and (top, bottom, left)
+     */
+    private void addDiamond(float x, float y, float size, int color) {
+        if ((vertexCount + 6) * 2 > vertices.length) {
+            vertices = Arrays.copyOf(vertices, vertices.length * 2);
+            vertexColors = Arrays.copyOf(vertexColors, vertices.length);
+        }
+        int i = vertexCount * 2;
+        float[] v = vertices;
+        v[i] = x;
+        v[i + 1] = y - size;
+        v[i + 2] = x + size;
+        v[i + 3] = y;
+        v[i + 4] = x;
+        v[i + 5] = y + size;
+        v[i + 6] = x;
+        v[i + 7] = y - size;
+        v[i + 8] = x;
+        v[i + 9] = y + size;
+        v[i + 10] = x - size;
+        v[i + 11] = y;
+        Arrays.fill(vertexColors, vertexCount, vertexCount + 6, color);
+        vertexCount += 6;
+    }
+
+    /**
+     * Adds the four edges of a diamond to the outlines
+     */
+    private void addOutline(float x, float y, float size) {
+        if ((outlineCount + 4) * 4 > outlines.length) {
+            outlines = Arrays.copyOf(outlines, outlines.length * 2);
+        }
+        int i = outlineCount * 4;
+        float[] o = outlines;
+        // Top -> right -> bottom -> left -> top
+        o[i] = x;
+        o[i + 1] = y - size;
+        o[i + 2] = o[i + 4] = x + size;
+        o[i + 3] = o[i + 5] = y;
+        o[i + 6] = o[i + 8] = x;
+        o[i + 7] = o[i + 9] = y + size;
+        o[i + 10] = o[i + 12] = x - size;
+        o[i + 11] = o[i + 13] = y;
+        o[i + 14] = x;
+        o[i + 15] = y - size;
+        outlineCount += 4;
+    }
+
+    private void addHandleLine(float startX, float startY, float endX, float endY, int color) {
+        if ((handleLineCount + 1) * 4 > handleLines.length) {
+            handleLines = Arrays.copyOf(handleLines, handleLines.length * 2);
+            handleLineColors = Arrays.copyOf(handleLineColors, handleLineColors.length * 2);
+        }
+        int i = handleLineCount * 4;
+        handleLines[i] = startX;
+        handleLines[i + 1] = startY;
+        handleLines[i + 2] = endX;
+        handleLines[i + 3] = endY;
+        handleLineColors[handleLineCount] = color;
+        handleLineCount++;
+    }
+}
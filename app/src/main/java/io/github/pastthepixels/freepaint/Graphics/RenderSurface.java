@@ -0,0 +1,301 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.material.color.MaterialColors;
+
+import java.util.List;
+
+import io.github.pastthepixels.freepaint.Debug.Metrics;
+import io.github.pastthepixels.freepaint.History.PersistentVector;
+
+/**
+ * Another way to draw a DrawCanvas: instead of drawing in <code>View.onDraw</code> on the UI thread, the canvas
+ * sends a <code>Frame</code> (a snapshot of everything that's needed to draw it) here, and a separate thread draws
+ * it onto a surface with a software Canvas. That way long erases, loads, etc. on the UI thread don't stop the
+ * screen from updating, and drawing a big document doesn't hold up input.
+ * <p>
+ * Only the newest frame is ever drawn -- if frames come in faster than we can draw them, older ones are skipped.
+ * The DrawCanvas still gets every touch event; it just stops drawing anything itself (see <code>DrawCanvas.setRenderSurface</code>).
+ */
+public class RenderSurface extends SurfaceView implements SurfaceHolder.Callback {
+    /**
+     * How long to wait after zooming stops before rebuilding tiles, in milliseconds
+     */
+    private static final long ZOOM_SETTLE_DELAY = 150;
+
+    private final Object lock = new Object();
+
+    /**
+     * Color behind the document (the same as DrawCanvas's background)
+     */
+    private final int backgroundColor;
+
+    // Only used on the render thread
+    private final TileCache tileCache = new TileCache();
+    private final SpatialIndex spatialIndex = new SpatialIndex();
+    private final Paint paint = new Paint();
+    private final PointOverlay pointOverlay = new PointOverlay();
+    private final PathHighlighter pathHighlighter = new PathHighlighter();
+    private final RectF viewport = new RectF();
+    private float lastFrameScale = 0;
+
+    // Everything below is guarded by lock
+    /**
+     * The newest frame that hasn't been drawn yet, or null if we're up to date
+     */
+    private Frame nextFrame;
+    /**
+     * The last frame that was sent, so it can be redrawn (ex. when the surface changes size)
+     */
+    private Frame lastFrame;
+    private Thread thread;
+    private boolean running = false;
+    /**
+     * Whether the last frame was drawn without tiles because the scale changed, so it should be redrawn with tiles
+     * once the scale stops changing
+     */
+    private boolean settling = false;
+
+    /**
+     * Constructor
+     */
+    public RenderSurface(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        getHolder().addCallback(this);
+        backgroundColor = MaterialColors.layer(
+                MaterialColors.getColor(this, com.google.android.material.R.attr.colorSurface),
+                MaterialColors.getColor(this, androidx.appcompat.R.attr.colorControlHighlight)
+        );
+    }
+
+    /**
+     * Constructor
+     */
+    public RenderSurface(Context context) {
+        this(context, null);
+    }
+
+    /**
+     * Queues a frame to be drawn. This can be called from any thread, and doesn't wait for the frame to be drawn.
+     *
+     * @param frame The frame to draw
+     */
+    public void render(Frame frame) {
+        synchronized (lock) {
+            nextFrame = frame;
+            lastFrame = frame;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void surfaceCreated(@NonNull SurfaceHolder holder) {
+        synchronized (lock) {
+            running = true;
+            nextFrame = lastFrame;
+            thread = new Thread(this::renderLoop, "RenderSurface");
+            thread.start();
+        }
+    }
+
+    @Override
+    public void surfaceChanged(@NonNull SurfaceHolder holder, int format, int width, int height) {
+        synchronized (lock) {
+            nextFrame = lastFrame;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Stops the render thread. This waits for it to finish, since we can't draw to the surface after this returns.
+     */
+    @Override
+    public void surfaceDestroyed(@NonNull SurfaceHolder holder) {
+        Thread stopping;
+        synchronized (lock) {
+            running = false;
+            stopping = thread;
+            thread = null;
+            lock.notifyAll();
+        }
+        try {
+            stopping.join();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Waits for frames and draws them until the surface is destroyed.
+     */
+    private void renderLoop() {
+        while (true) {
+            Frame frame;
+            synchronized (lock) {
+                try {
+                    if (running && nextFrame == null && settling) {
+                        // Redraws the last frame with tiles if no new frame comes in soon
+                        lock.wait(ZOOM_SETTLE_DELAY);
+                        if (nextFrame == null) {
+                            nextFrame = lastFrame;
+                        }
+                    }
+                    while (running && nextFrame == null) {
+                        lock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                    return;
+                }
+                if (!running) {
+                    return;
+                }
+                frame = nextFrame;
+                nextFrame = null;
+            }
+            draw(frame);
+        }
+    }
+
+    /**
+     * Draws a frame onto the surface. This is what DrawCanvas.onDraw does, but with everything taken from the frame.
+     */
+    private void draw(Frame frame) {
+        long start = Metrics.start();
+        Canvas canvas = getHolder().lockCanvas();
+        if (canvas == null) {
+            return;
+        }
+        try {
+            canvas.drawColor(backgroundColor);
+            canvas.save();
+            canvas.scale(frame.scaleFactor, frame.scaleFactor);
+            canvas.translate(frame.offsetX, frame.offsetY);
+            DrawCanvas.drawPage(canvas, paint, frame.documentWidth, frame.documentHeight, frame.documentColor, frame.scaleFactor, false);
+            // Draws every path, then tool paths
+            spatialIndex.sync(frame.paths);
+            boolean zooming = frame.scaleFactor != lastFrameScale;
+            if (zooming) {
+                // Draws paths directly until the scale stops changing
+                setViewport(canvas, frame);
+                int count = spatialIndex.query(viewport);
+                for (int i = 0; i < count; i++) {
+                    frame.paths.get(spatialIndex.getResult(i)).draw(canvas, frame.screenDensity, frame.scaleFactor);
+                }
+                Metrics.count(Metrics.PATHS_CULLED, frame.paths.size() - count);
+                lastFrameScale = frame.scaleFactor;
+            } else {
+                canvas.save();
+                canvas.translate(-frame.offsetX, -frame.offsetY);
+                canvas.scale(1 / frame.scaleFactor, 1 / frame.scaleFactor);
+                tileCache.draw(
+                        canvas,
+                        frame.paths,
+                        spatialIndex,
+                        frame.scaleFactor,
+                        frame.offsetX * frame.scaleFactor,
+                        frame.offsetY * frame.scaleFactor,
+                        frame.screenDensity
+                );
+                canvas.restore();
+            }
+            if (frame.dragLayer != null) {
+                frame.dragLayer.draw(canvas, frame.screenDensity, frame.scaleFactor);
+            }
+            pointOverlay.begin(frame.screenDensity, frame.scaleFactor);
+            if (frame.highlightPaths) {
+                paint.reset();
+                paint.setARGB(150, 0, 0, 0);
+                paint.setStyle(Paint.Style.FILL);
+                canvas.drawPaint(paint);
+                setViewport(canvas, frame);
+                pathHighlighter.draw(canvas, frame.paths, spatialIndex, viewport, pointOverlay, frame.screenDensity, frame.scaleFactor);
+            }
+            for (DrawPath path : frame.toolPaths) {
+                path.draw(canvas, frame.screenDensity, frame.scaleFactor);
+                if (path.drawPoints) {
+                    pointOverlay.add(path);
+                }
+            }
+            pointOverlay.draw(canvas);
+            canvas.restore();
+            synchronized (lock) {
+                settling = zooming;
+            }
+        } finally {
+            getHolder().unlockCanvasAndPost(canvas);
+        }
+        Metrics.stop(Metrics.RENDER_THREAD_DRAW, start);
+        Metrics.endFrame();
+    }
+
+    /**
+     * Sets <code>viewport</code> to the part of the document that's on the surface.
+     */
+    private void setViewport(Canvas canvas, Frame frame) {
+        viewport.set(
+                -frame.offsetX,
+                -frame.offsetY,
+                canvas.getWidth() / frame.scaleFactor - frame.offsetX,
+                canvas.getHeight() / frame.scaleFactor - frame.offsetY
+        );
+    }
+
+    /**
+     * Everything needed to draw one frame of a DrawCanvas. Nothing in here is changed after it's made,
+     * so it can be drawn on another thread while the UI thread keeps going.
+     */
+    public static class Frame {
+        /**
+         * The paths in the document (paths in here are never changed, see <code>DrawCanvas.paths</code>)
+         */
+        public final PersistentVector<DrawPath> paths;
+        public final float documentWidth;
+        public final float documentHeight;
+        public final int documentColor;
+        public final float scaleFactor;
+        /**
+         * Translation of the canvas after scaling
+         */
+        public final float offsetX;
+        public final float offsetY;
+        public final float screenDensity;
+        /**
+         * Copies of the tool paths (see <code>DrawPath.snapshot</code>)
+         */
+        public final List<DrawPath> toolPaths;
+        /**
+         * Whether to darken the document and highlight its paths before drawing tool paths (see <code>Tool.highlightsPaths</code>)
+         */
+        public final boolean highlightPaths;
+        /**
+         * Paths a tool is dragging, or null (see <code>Tool.getDragLayer</code>)
+         */
+        public final DragLayer dragLayer;
+
+        public Frame(PersistentVector<DrawPath> paths, float documentWidth, float documentHeight, int documentColor,
+                     float scaleFactor, float offsetX, float offsetY, float screenDensity,
+                     List<DrawPath> toolPaths, boolean highlightPaths, DragLayer dragLayer) {
+            this.paths = paths;
+            this.documentWidth = documentWidth;
+            this.documentHeight = documentHeight;
+            this.documentColor = documentColor;
+            this.scaleFactor = scaleFactor;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+            this.screenDensity = screenDensity;
+            this.toolPaths = toolPaths;
+            this.highlightPaths = highlightPaths;
+            this.dragLayer = dragLayer;
+        }
+    }
+}
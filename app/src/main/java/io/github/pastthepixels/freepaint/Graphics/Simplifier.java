@@ -0,0 +1,135 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+import java.util.Arrays;
+
+/**
+ * Simplifies polylines with the Ramer-Douglas-Peucker algorithm, without recursion or garbage.
+ * <p>
+ * Points are x/y pairs in a float array. Instead of splitting the list into new lists, ranges still to be looked at
+ * are kept on an explicit stack, and which points are kept is stored in a bitmap. Distances are compared squared,
+ * so there are no square roots. The stack, bitmap and coordinate buffer are reused between calls, so once they're
+ * big enough simplifying doesn't allocate anything -- keep one Simplifier around per thread.
+ * <pre>
+ * float[] coordinates = simplifier.getBuffer(count);
+ * // ...fill in coordinates...
+ * int kept = simplifier.simplify(coordinates, count, epsilon);
+ * // coordinates now starts with the kept points, and isKept(i) says which of the original points they were
+ * </pre>
+ */
+public class Simplifier {
+    private float[] buffer = new float[256];
+    private long[] keep = new long[4];
+    private int[] stack = new int[64];
+
+    /**
+     * Gets a reusable array big enough to hold some points, ex. to copy coordinates into before simplifying.
+     * The contents are overwritten by the next call.
+     *
+     * @param points How many points it needs to hold
+     * @return An array with room for at least <code>points * 2</code> floats
+     */
+    public float[] getBuffer(int points) {
+        if (buffer.length < points * 2) {
+            buffer = new float[Math.max(points * 2, buffer.length * 2)];
+        }
+        return buffer;
+    }
+
+    /**
+     * Simplifies a polyline in place. The first and last points are always kept, and every point that's thrown away
+     * is within <code>epsilon</code> of the simplified line.
+     *
+     * @param coordinates Points as x/y pairs. The kept points are moved to the start of the array, in order.
+     * @param count       How many points there are
+     * @param epsilon     How far (in the same units as the points) the simplified line can be from a point
+     * @return How many points were kept
+     */
+    public int simplify(float[] coordinates, int count, double epsilon) {
+        int words = (count + 63) >> 6;
+        if (keep.length < words) {
+            keep = new long[Math.max(words, keep.length * 2)];
+        }
+        Arrays.fill(keep, 0, words, 0);
+        if (count <= 2) {
+            for (int i = 0; i < count; i++) {
+                setKept(i);
+            }
+            return count;
+        }
+        double epsilonSquared = epsilon * epsilon;
+        setKept(0);
+        setKept(count - 1);
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        stack[stackSize++] = count - 1;
+        while (stackSize > 0) {
+            int end = stack[--stackSize];
+            int start = stack[--stackSize];
+            // Finds the point farthest from the line between start and end
+            float startX = coordinates[start * 2];
+            float startY = coordinates[start * 2 + 1];
+            float endX = coordinates[end * 2];
+            float endY = coordinates[end * 2 + 1];
+            float maxDistance = -1;
+            int index = -1;
+            for (int i = start + 1; i < end; i++) {
+                float distance = distanceToSegmentSquared(coordinates[i * 2], coordinates[i * 2 + 1], startX, startY, endX, endY);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    index = i;
+                }
+            }
+            // Keeps it and looks at both sides of it, like the recursive version would
+            if (index != -1 && maxDistance > epsilonSquared) {
+                setKept(index);
+                if (stackSize + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                if (index - start > 1) {
+                    stack[stackSize++] = start;
+                    stack[stackSize++] = index;
+                }
+                if (end - index > 1) {
+                    stack[stackSize++] = index;
+                    stack[stackSize++] = end;
+                }
+            }
+        }
+        // Moves the kept points to the front
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (isKept(i)) {
+                coordinates[kept * 2] = coordinates[i * 2];
+                coordinates[kept * 2 + 1] = coordinates[i * 2 + 1];
+                kept++;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @param i Index of a point given to the last call of <code>simplify</code>
+     * @return Whether that point was kept
+     */
+    public boolean isKept(int i) {
+        return (keep[i >> 6] & (1L << i)) != 0;
+    }
+
+    private void setKept(int i) {
+        keep[i >> 6] |= 1L << i;
+    }
+
+    /**
+     * Squared distance from (px, py) to the line segment from (ax, ay) to (bx, by)
+     */
+    public static float distanceToSegmentSquared(float px, float py, float ax, float ay, float bx, float by) {
+        float dx = bx - ax;
+        float dy = by - ay;
+        float lengthSquared = dx * dx + dy * dy;
+        float t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        float x = ax + t * dx - px;
+        float y = ay + t * dy - py;
+        return x * x + y * y;
+    }
+}
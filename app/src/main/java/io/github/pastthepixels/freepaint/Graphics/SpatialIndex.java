@@ -0,0 +1,388 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+import android.graphics.RectF;
+
+import java.util.Arrays;
+
+import io.github.pastthepixels.freepaint.History.PersistentVector;
+
+/**
+ * Finds which paths are in a rectangle without looking at every path in the document.
+ * <p>
+ * This is a dynamic AABB tree (like the one in Box2D): every path's bounds is a leaf, and every other node holds the
+ * bounds of its two children. Finding everything in a rectangle only walks down the branches that overlap it.
+ * Adding or removing a leaf only touches the nodes above it, and the tree is rebalanced with rotations as it
+ * goes so it stays about log2(n) deep.
+ * <p>
+ * Each leaf stores the index of its path in <code>DrawCanvas.paths</code>. Results are sorted by that index, so
+ * paths can be drawn in the same order as the document.
+ * Nodes are stored in arrays (instead of one object per node) so the tree doesn't make garbage as it changes.
+ */
+public class SpatialIndex {
+    private static final int NULL = -1;
+
+    // Node data. Leaves have child1 == NULL.
+    private float[] left = new float[16];
+    private float[] top = new float[16];
+    private float[] right = new float[16];
+    private float[] bottom = new float[16];
+    private int[] parent = new int[16];
+    private int[] child1 = new int[16];
+    private int[] child2 = new int[16];
+    private int[] height = new int[16];
+    private int[] item = new int[16];
+
+    private int root = NULL;
+
+    /**
+     * Number of nodes that have ever been allocated (used or in the free list)
+     */
+    private int nodeCount = 0;
+
+    /**
+     * First node in a linked list (through <code>parent</code>) of nodes that can be reused
+     */
+    private int freeList = NULL;
+
+    /**
+     * The leaf node for each item, or NULL if it isn't in the tree
+     */
+    private int[] leafForItem = new int[16];
+
+    /**
+     * Stack used to walk the tree in <code>query</code>
+     */
+    private int[] stack = new int[64];
+
+    /**
+     * Results of the last query
+     */
+    private int[] results = new int[64];
+    private int resultCount = 0;
+
+    /**
+     * The version of the document the tree was last synced to
+     */
+    private PersistentVector<DrawPath> syncedPaths = PersistentVector.empty();
+
+    public SpatialIndex() {
+        Arrays.fill(leafForItem, NULL);
+    }
+
+    /**
+     * Updates the tree so it matches a version of the document. Only paths that changed since the last sync
+     * (found with <code>PersistentVector.diff</code>) are removed and added back, so this is cheap to call every frame.
+     *
+     * @param paths The paths in the document
+     */
+    public void sync(PersistentVector<DrawPath> paths) {
+        if (paths == syncedPaths) {
+            return;
+        }
+        paths.diff(syncedPaths, (index, oldPath, newPath) -> {
+            if (oldPath != null) {
+                remove(index);
+            }
+            if (newPath != null) {
+                RectF bounds = newPath.getBounds();
+                insert(index, bounds.left, bounds.top, bounds.right, bounds.bottom);
+            }
+        });
+        syncedPaths = paths;
+    }
+
+    /**
+     * Adds an item to the tree.
+     *
+     * @param index  The item (ex. the index of a path), which can't already be in the tree
+     * @param left   Bounds of the item
+     * @param top    Bounds of the item
+     * @param right  Bounds of the item
+     * @param bottom Bounds of the item
+     */
+    public void insert(int index, float left, float top, float right, float bottom) {
+        if (index >= leafForItem.length) {
+            int oldLength = leafForItem.length;
+            leafForItem = Arrays.copyOf(leafForItem, Math.max(index + 1, oldLength * 2));
+            Arrays.fill(leafForItem, oldLength, leafForItem.length, NULL);
+        }
+        int leaf = allocateNode();
+        this.left[leaf] = left;
+        this.top[leaf] = top;
+        this.right[leaf] = right;
+        this.bottom[leaf] = bottom;
+        item[leaf] = index;
+        leafForItem[index] = leaf;
+        insertLeaf(leaf);
+    }
+
+    /**
+     * Removes an item from the tree, if it's there.
+     *
+     * @param index The item to remove
+     */
+    public void remove(int index) {
+        if (index >= leafForItem.length || leafForItem[index] == NULL) {
+            return;
+        }
+        int leaf = leafForItem[index];
+        leafForItem[index] = NULL;
+        removeLeaf(leaf);
+        freeNode(leaf);
+    }
+
+    /**
+     * Finds every item whose bounds overlap a rectangle. Read the results with <code>getResult</code>.
+     *
+     * @return The number of items found
+     */
+    public int query(float left, float top, float right, float bottom) {
+        resultCount = 0;
+        if (root == NULL) {
+            return 0;
+        }
+        int stackSize = 0;
+        stack[stackSize++] = root;
+        while (stackSize > 0) {
+            int node = stack[--stackSize];
+            if (this.left[node] > right || this.right[node] < left || this.top[node] > bottom || this.bottom[node] < top) {
+                continue;
+            }
+            if (child1[node] == NULL) {
+                if (resultCount == results.length) {
+                    results = Arrays.copyOf(results, resultCount * 2);
+                }
+                results[resultCount++] = item[node];
+            } else {
+                if (stackSize + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[stackSize++] = child1[node];
+                stack[stackSize++] = child2[node];
+            }
+        }
+        // Sorted so that paths can be drawn in order
+        Arrays.sort(results, 0, resultCount);
+        return resultCount;
+    }
+
+    /**
+     * Finds every item whose bounds overlap a rectangle. Read the results with <code>getResult</code>.
+     *
+     * @return The number of items found
+     */
+    public int query(RectF area) {
+        return query(area.left, area.top, area.right, area.bottom);
+    }
+
+    /**
+     * @param i Which result of the last query to get, from 0 to (what query returned - 1)
+     * @return The item, in ascending order
+     */
+    public int getResult(int i) {
+        return results[i];
+    }
+
+    /**
+     * @return How many levels deep the tree is (0 if it's empty)
+     */
+    public int getHeight() {
+        return root == NULL ? 0 : height[root] + 1;
+    }
+
+    private int allocateNode() {
+        int node;
+        if (freeList != NULL) {
+            node = freeList;
+            freeList = parent[node];
+        } else {
+            if (nodeCount == parent.length) {
+                int capacity = nodeCount * 2;
+                left = Arrays.copyOf(left, capacity);
+                top = Arrays.copyOf(top, capacity);
+                right = Arrays.copyOf(right, capacity);
+                bottom = Arrays.copyOf(bottom, capacity);
+                parent = Arrays.copyOf(parent, capacity);
+                child1 = Arrays.copyOf(child1, capacity);
+                child2 = Arrays.copyOf(child2, capacity);
+                height = Arrays.copyOf(height, capacity);
+                item = Arrays.copyOf(item, capacity);
+            }
+            node = nodeCount++;
+        }
+        parent[node] = child1[node] = child2[node] = item[node] = NULL;
+        height[node] = 0;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        parent[node] = freeList;
+        height[node] = -1;
+        freeList = node;
+    }
+
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            parent[root] = NULL;
+            return;
+        }
+        // Finds the best sibling for the leaf, going down whichever child would grow the least
+        int sibling = root;
+        while (child1[sibling] != NULL) {
+            float perimeter = perimeter(sibling);
+            float combinedPerimeter = unionPerimeter(sibling, leaf);
+            // Cost of making a new parent for this node and the leaf
+            float cost = 2 * combinedPerimeter;
+            // Cost of pushing the leaf further down the tree
+            float inheritanceCost = 2 * (combinedPerimeter - perimeter);
+            float cost1 = descendCost(child1[sibling], leaf) + inheritanceCost;
+            float cost2 = descendCost(child2[sibling], leaf) + inheritanceCost;
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+            sibling = cost1 < cost2 ? child1[sibling] : child2[sibling];
+        }
+        // Makes a new parent for the sibling and the leaf
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        height[newParent] = height[sibling] + 1;
+        setUnion(newParent, sibling, leaf);
+        if (oldParent != NULL) {
+            replaceChild(oldParent, sibling, newParent);
+        } else {
+            root = newParent;
+        }
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+        refit(parent[leaf]);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+        int oldParent = parent[leaf];
+        int grandParent = parent[oldParent];
+        int sibling = child1[oldParent] == leaf ? child2[oldParent] : child1[oldParent];
+        if (grandParent != NULL) {
+            // The sibling takes the place of the parent
+            replaceChild(grandParent, oldParent, sibling);
+            parent[sibling] = grandParent;
+            freeNode(oldParent);
+            refit(grandParent);
+        } else {
+            root = sibling;
+            parent[sibling] = NULL;
+            freeNode(oldParent);
+        }
+    }
+
+    /**
+     * Walks up from a node, rebalancing and recomputing the bounds and height of every node on the way
+     */
+    private void refit(int node) {
+        while (node != NULL) {
+            node = balance(node);
+            height[node] = 1 + Math.max(height[child1[node]], height[child2[node]]);
+            setUnion(node, child1[node], child2[node]);
+            node = parent[node];
+        }
+    }
+
+    /**
+     * If one child of <code>a</code> is more than one level taller than the other, rotates it up.
+     *
+     * @return The node that's now where <code>a</code> was
+     */
+    private int balance(int a) {
+        if (child1[a] == NULL || height[a] < 2) {
+            return a;
+        }
+        int b = child1[a];
+        int c = child2[a];
+        int difference = height[c] - height[b];
+        if (difference > 1) {
+            rotateUp(a, c, b, false);
+            return c;
+        }
+        if (difference < -1) {
+            rotateUp(a, b, c, true);
+            return b;
+        }
+        return a;
+    }
+
+    /**
+     * Swaps node <code>a</code> with its taller child, which takes the shorter of its own children with it.
+     *
+     * @param a      The node to rotate down
+     * @param tall   The taller child of a, which replaces a
+     * @param other  The other child of a
+     * @param isLeft Whether <code>tall</code> is child1 of a
+     */
+    private void rotateUp(int a, int tall, int other, boolean isLeft) {
+        int f = child1[tall];
+        int g = child2[tall];
+        // tall takes a's place
+        child1[tall] = a;
+        parent[tall] = parent[a];
+        parent[a] = tall;
+        if (parent[tall] != NULL) {
+            replaceChild(parent[tall], a, tall);
+        } else {
+            root = tall;
+        }
+        // tall keeps its taller child, and a gets the shorter one
+        int keep = height[f] > height[g] ? f : g;
+        int give = keep == f ? g : f;
+        child2[tall] = keep;
+        if (isLeft) {
+            child1[a] = give;
+        } else {
+            child2[a] = give;
+        }
+        parent[give] = a;
+        setUnion(a, other, give);
+        height[a] = 1 + Math.max(height[other], height[give]);
+        setUnion(tall, a, keep);
+        height[tall] = 1 + Math.max(height[a], height[keep]);
+    }
+
+    private void replaceChild(int node, int oldChild, int newChild) {
+        if (child1[node] == oldChild) {
+            child1[node] = newChild;
+        } else {
+            child2[node] = newChild;
+        }
+    }
+
+    /**
+     * Extra cost of putting <code>leaf</code> under <code>node</code>
+     */
+    private float descendCost(int node, int leaf) {
+        float combined = unionPerimeter(node, leaf);
+        return child1[node] == NULL ? combined : combined - perimeter(node);
+    }
+
+    private void setUnion(int node, int a, int b) {
+        left[node] = Math.min(left[a], left[b]);
+        top[node] = Math.min(top[a], top[b]);
+        right[node] = Math.max(right[a], right[b]);
+        bottom[node] = Math.max(bottom[a], bottom[b]);
+    }
+
+    private float perimeter(int node) {
+        return 2 * ((right[node] - left[node]) + (bottom[node] - top[node]));
+    }
+
+    private float unionPerimeter(int a, int b) {
+        float width = Math.max(right[a], right[b]) - Math.min(left[a], left[b]);
+        float height = Math.max(bottom[a], bottom[b]) - Math.min(top[a], top[b]);
+        return 2 * (width + height);
+    }
+}
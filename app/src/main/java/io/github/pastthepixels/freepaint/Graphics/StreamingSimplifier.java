@@ -0,0 +1,119 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+/**
+ * Simplifies a stroke as it's being drawn, one point at a time, so that tools only add the points that matter to
+ * their live path (instead of keeping every touch sample until <code>DrawPath.finalise</code>).
+ * <p>
+ * This is a sliding-window version of RDP: every point since the last point we kept (the "anchor") is held in a
+ * window. A new point can replace the newest one as long as every point in the window is within
+ * <code>tolerance</code> of the line from the anchor to the new point. When one isn't, the newest point is kept
+ * and becomes the new anchor. The window has a maximum size, so checking a point is never slower than
+ * <code>MAX_WINDOW</code> distance checks.
+ * <p>
+ * Since a point is only known to be kept once the next point comes in, the live path is one point behind the finger
+ * (and at most <code>tolerance</code> away from it) until <code>finish</code> is called.
+ */
+public class StreamingSimplifier {
+    /**
+     * Default tolerance, in dp on the screen -- small enough that you can't see the difference
+     */
+    public static final float TOLERANCE_DP = 0.5f;
+
+    /**
+     * Most points we check against at once, so long straight lines still get a point every so often
+     */
+    private static final int MAX_WINDOW = 64;
+
+    /**
+     * Points since the anchor, as x/y pairs
+     */
+    private final float[] window = new float[MAX_WINDOW * 2];
+    private int windowSize = 0;
+
+    private float toleranceSquared;
+    private boolean hasAnchor = false;
+    private float anchorX;
+    private float anchorY;
+
+    /**
+     * The newest point, which hasn't been kept (yet)
+     */
+    private Point candidate = null;
+
+    /**
+     * Starts a new stroke.
+     *
+     * @param screenDensity Screen density from the display metrics
+     * @param scaleFactor   The scale factor of the canvas, so the tolerance is the same on the screen at any zoom
+     */
+    public void reset(float screenDensity, float scaleFactor) {
+        float tolerance = TOLERANCE_DP * screenDensity / scaleFactor;
+        toleranceSquared = tolerance * tolerance;
+        hasAnchor = false;
+        candidate = null;
+        windowSize = 0;
+    }
+
+    /**
+     * Adds the next point of the stroke.
+     *
+     * @param point The point
+     * @return A point to add to the path now (either this one, or an earlier one that turned out to be needed), or null
+     */
+    public Point add(Point point) {
+        if (!hasAnchor) {
+            setAnchor(point);
+            return point;
+        }
+        if (candidate == null || (windowSize < MAX_WINDOW && windowFits(point.x, point.y))) {
+            // The newest point can be skipped: the line to this point is close enough to it (and everything before it)
+            addToWindow(point);
+            candidate = point;
+            return null;
+        }
+        // The newest point has to be kept
+        Point kept = candidate;
+        setAnchor(kept);
+        addToWindow(point);
+        candidate = point;
+        return kept;
+    }
+
+    /**
+     * Ends the stroke.
+     *
+     * @return The last point, if it hasn't been added to the path yet, or null
+     */
+    public Point finish() {
+        Point last = candidate;
+        candidate = null;
+        hasAnchor = false;
+        windowSize = 0;
+        return last;
+    }
+
+    private void setAnchor(Point point) {
+        hasAnchor = true;
+        anchorX = point.x;
+        anchorY = point.y;
+        windowSize = 0;
+    }
+
+    private void addToWindow(Point point) {
+        window[windowSize * 2] = point.x;
+        window[windowSize * 2 + 1] = point.y;
+        windowSize++;
+    }
+
+    /**
+     * @return Whether every point in the window is within the tolerance of the line from the anchor to (x, y)
+     */
+    private boolean windowFits(float x, float y) {
+        for (int i = 0; i < windowSize; i++) {
+            if (Simplifier.distanceToSegmentSquared(window[i * 2], window[i * 2 + 1], anchorX, anchorY, x, y) > toleranceSquared) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
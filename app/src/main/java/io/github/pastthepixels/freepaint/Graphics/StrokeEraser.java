@@ -0,0 +1,156 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+/**
+ * Erases a filled shape from a stroke (an open path), cutting the stroke exactly where it crosses the shape's
+ * outline instead of only dropping the points that are inside it. So a quick eraser swipe that goes between two
+ * points of a stroke still cuts it.
+ * <p>
+ * Each segment of the stroke is intersected with the outline (see <code>FlattenedPath.intersectSegment</code>), which
+ * splits it into pieces that are either all inside or all outside. Pieces that are outside are kept: each one is the
+ * part of the original curve between two crossings, so its handles are the original curve's derivative scaled to
+ * the piece. Crossings are found along the straight line between the two points (which is very close to the curve,
+ * since stroke handles are short), then moved to the spot on the curve that lines up with them. The new list of
+ * points is built in one pass, so erasing is linear in the length of the stroke.
+ */
+public class StrokeEraser {
+    private StrokeEraser() {
+    }
+
+    /**
+     * Erases a shape from a stroke.
+     *
+     * @param points The points of the stroke (aren't changed)
+     * @param eraser The shape to erase
+     * @param out    Cleared, then filled with what's left of the stroke. Each piece starts with a "move" point.
+     * @return Whether anything was erased (if not, <code>out</code> is the same as <code>points</code>)
+     */
+    public static boolean erase(PointBuffer points, FlattenedPath eraser, PointBuffer out) {
+        out.clear();
+        boolean erased = false;
+        float[] crossings = new float[8];
+        // Whether the last point in out is the end of the last segment, so the next segment continues from it
+        boolean connected = false;
+        for (int i = 0; i < points.size(); i++) {
+            if (i == 0 || points.getCommand(i) == Point.COMMANDS.move) {
+                // Starts a new subpath
+                connected = !eraser.contains(points.getX(i), points.getY(i));
+                if (connected) {
+                    out.add(points.getX(i), points.getY(i), points.getCommand(i), points.getColor(i));
+                    copyHandles(points, i, out);
+                } else {
+                    erased = true;
+                }
+                continue;
+            }
+            float x0 = points.getX(i - 1);
+            float y0 = points.getY(i - 1);
+            float x1 = points.getX(i);
+            float y1 = points.getY(i);
+            int count = eraser.intersectSegment(x0, y0, x1, y1, crossings);
+            if (count > crossings.length) {
+                crossings = new float[count * 2];
+                count = eraser.intersectSegment(x0, y0, x1, y1, crossings);
+            }
+            // Goes through each piece of the segment between crossings
+            float start = 0;
+            for (int piece = 0; piece <= count; piece++) {
+                float end = piece == count ? 1 : crossings[piece];
+                if (end <= start) {
+                    continue;
+                }
+                float middle = (start + end) / 2;
+                if (eraser.contains(x0 + (x1 - x0) * middle, y0 + (y1 - y0) * middle)) {
+                    erased = true;
+                    connected = false;
+                } else {
+                    addPiece(points, i, toCurve(points, i, start), toCurve(points, i, end), connected, out);
+                    connected = end == 1;
+                }
+                start = end;
+            }
+        }
+        return erased;
+    }
+
+    /**
+     * Adds the part of the curve between points <code>i - 1</code> and <code>i</code> from <code>start</code> to
+     * <code>end</code> (from 0 to 1).
+     *
+     * @param connected Whether the last point in <code>out</code> is where the piece starts
+     */
+    private static void addPiece(PointBuffer points, int i, float start, float end, boolean connected, PointBuffer out) {
+        // The curve's control points
+        float x0 = points.getX(i - 1);
+        float y0 = points.getY(i - 1);
+        float x1 = points.getRightHandleX(i - 1);
+        float y1 = points.getRightHandleY(i - 1);
+        float x2 = points.getLeftHandleX(i);
+        float y2 = points.getLeftHandleY(i);
+        float x3 = points.getX(i);
+        float y3 = points.getY(i);
+        // A piece of a cubic from t = a to t = b is a cubic from C(a) to C(b), with handles of C'(a) and C'(b)
+        // times (b - a) / 3
+        float scale = (end - start) / 3;
+        if (!connected) {
+            out.add(evaluate(x0, x1, x2, x3, start), evaluate(y0, y1, y2, y3, start), Point.COMMANDS.move, points.getColor(i));
+        }
+        int first = out.size() - 1;
+        out.setRightHandle(first, derivative(x0, x1, x2, x3, start) * scale, derivative(y0, y1, y2, y3, start) * scale);
+        if (end == 1) {
+            out.add(x3, y3, points.getCommand(i), points.getColor(i));
+            copyHandles(points, i, out);
+        } else {
+            out.add(evaluate(x0, x1, x2, x3, end), evaluate(y0, y1, y2, y3, end), points.getCommand(i), points.getColor(i));
+        }
+        out.setLeftHandle(out.size() - 1, -derivative(x0, x1, x2, x3, end) * scale, -derivative(y0, y1, y2, y3, end) * scale);
+    }
+
+    /**
+     * Finds the spot on the curve between points <code>i - 1</code> and <code>i</code> that lines up with a spot on
+     * the straight line between them (so its projection onto the line is that far along it), by bisection.
+     *
+     * @param t How far along the straight line, from 0 to 1
+     * @return How far along the curve, from 0 to 1
+     */
+    private static float toCurve(PointBuffer points, int i, float t) {
+        if (t == 0 || t == 1) {
+            return t;
+        }
+        float x0 = points.getX(i - 1);
+        float y0 = points.getY(i - 1);
+        float dx = points.getX(i) - x0;
+        float dy = points.getY(i) - y0;
+        float lengthSquared = dx * dx + dy * dy;
+        float low = 0;
+        float high = 1;
+        for (int iteration = 0; iteration < 24; iteration++) {
+            float middle = (low + high) / 2;
+            float x = evaluate(x0, points.getRightHandleX(i - 1), points.getLeftHandleX(i), points.getX(i), middle);
+            float y = evaluate(y0, points.getRightHandleY(i - 1), points.getLeftHandleY(i), points.getY(i), middle);
+            if (((x - x0) * dx + (y - y0) * dy) / lengthSquared < t) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return (low + high) / 2;
+    }
+
+    private static void copyHandles(PointBuffer points, int i, PointBuffer out) {
+        float x = points.getX(i);
+        float y = points.getY(i);
+        out.setHandles(out.size() - 1,
+                points.getLeftHandleX(i) - x, points.getLeftHandleY(i) - y,
+                points.getRightHandleX(i) - x, points.getRightHandleY(i) - y);
+    }
+
+    private static float evaluate(float p0, float p1, float p2, float p3, float t) {
+        float mt = 1 - t;
+        return mt * mt * mt * p0 + 3 * mt * mt * t * p1 + 3 * mt * t * t * p2 + t * t * t * p3;
+    }
+
+    private static float derivative(float p0, float p1, float p2, float p3, float t) {
+        float mt = 1 - t;
+        return 3 * (mt * mt * (p1 - p0) + 2 * mt * t * (p2 - p1) + t * t * (p3 - p2));
+    }
+}
@@ -0,0 +1,244 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.RectF;
+import android.util.LongSparseArray;
+
+import java.util.ArrayList;
+
+import io.github.pastthepixels.freepaint.History.PersistentVector;
+
+/**
+ * Keeps the document's paths rasterized into 256x256 bitmap tiles at the current zoom level,
+ * so that a frame is a few bitmap draws instead of one drawPath per path.
+ * <p>
+ * Tiles are laid out in "scaled document space" (document coordinates times the scale factor), so panning
+ * reuses every tile and only zooming throws them all away. When <code>DrawCanvas.paths</code> changes, the
+ * new vector is diffed against the last one we drew (which is cheap since the two share most of their nodes)
+ * and only the tiles under the old and new bounds of each changed path are redrawn.
+ */
+public class TileCache {
+    /**
+     * Width/height of a tile, in pixels
+     */
+    public static final int TILE_SIZE = 256;
+
+    /**
+     * If more paths than this changed at once (ex. loading a file), it's faster to throw away every tile
+     * than to find the ones each path touches
+     */
+    private static final int MAX_CHANGES = 64;
+
+    /**
+     * Tiles that are ready to be drawn, by <code>key(x, y)</code>. Empty tiles are stored with no bitmap.
+     */
+    private final LongSparseArray<Tile> tiles = new LongSparseArray<>();
+
+    /**
+     * Bitmaps from tiles that were thrown away, so we don't have to allocate new ones
+     */
+    private final ArrayList<Bitmap> pool = new ArrayList<>();
+
+    private final Canvas tileCanvas = new Canvas();
+    private final RectF tileBounds = new RectF();
+
+    /**
+     * The version of the document the tiles were drawn from
+     */
+    private PersistentVector<DrawPath> renderedPaths = PersistentVector.empty();
+
+    /**
+     * The scale factor the tiles were drawn at
+     */
+    private float renderedScale = 0;
+
+    /**
+     * Counter that goes up once per frame, used to find tiles that weren't drawn last frame
+     */
+    private int frame = 0;
+
+    /**
+     * Number of paths found by the last diff (a field so the diff listener can change it)
+     */
+    private int changes = 0;
+
+    /**
+     * Draws every path in <code>paths</code> by drawing (and if needed, rasterizing) every tile on the screen.
+     * The canvas shouldn't have any scale or translation applied yet -- that's given by <code>scale</code> and <code>offset</code>.
+     *
+     * @param canvas        The canvas to draw to
+     * @param paths         Every path in the document
+     * @param index         Spatial index of <code>paths</code>, used to find the paths in each tile
+     * @param scale         The scale factor of the canvas
+     * @param offsetX       Where the document's origin is on the screen, in pixels
+     * @param offsetY       Where the document's origin is on the screen, in pixels
+     * @param screenDensity Passed along to <code>DrawPath.draw</code>
+     */
+    public void draw(Canvas canvas, PersistentVector<DrawPath> paths, SpatialIndex index, float scale, float offsetX, float offsetY, float screenDensity) {
+        frame++;
+        if (scale != renderedScale) {
+            clear();
+            renderedScale = scale;
+        } else if (paths != renderedPaths) {
+            invalidateChanges(paths);
+        }
+        renderedPaths = paths;
+        // Finds every tile on the screen
+        int left = (int) Math.floor(-offsetX / TILE_SIZE);
+        int top = (int) Math.floor(-offsetY / TILE_SIZE);
+        int right = (int) Math.floor((canvas.getWidth() - offsetX) / TILE_SIZE);
+        int bottom = (int) Math.floor((canvas.getHeight() - offsetY) / TILE_SIZE);
+        // Tiles are drawn on whole pixels so that the bitmaps don't get filtered
+        float originX = Math.round(offsetX);
+        float originY = Math.round(offsetY);
+        for (int y = top; y <= bottom; y++) {
+            for (int x = left; x <= right; x++) {
+                long key = key(x, y);
+                Tile tile = tiles.get(key);
+                if (tile == null) {
+                    tile = new Tile(render(x, y, paths, index, scale, screenDensity));
+                    tiles.put(key, tile);
+                }
+                tile.frame = frame;
+                if (tile.bitmap != null) {
+                    canvas.drawBitmap(tile.bitmap, originX + x * TILE_SIZE, originY + y * TILE_SIZE, null);
+                }
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Throws away every tile, ex. when the scale factor changes.
+     */
+    public void clear() {
+        for (int i = 0; i < tiles.size(); i++) {
+            recycle(tiles.valueAt(i));
+        }
+        tiles.clear();
+    }
+
+    /**
+     * Throws away every tile that overlaps a rectangle, so they get redrawn next frame.
+     *
+     * @param bounds The rectangle, in document coordinates
+     */
+    public void invalidate(RectF bounds) {
+        int left = (int) Math.floor(bounds.left * renderedScale / TILE_SIZE);
+        int top = (int) Math.floor(bounds.top * renderedScale / TILE_SIZE);
+        int right = (int) Math.floor(bounds.right * renderedScale / TILE_SIZE);
+        int bottom = (int) Math.floor(bounds.bottom * renderedScale / TILE_SIZE);
+        for (int y = top; y <= bottom; y++) {
+            for (int x = left; x <= right; x++) {
+                long key = key(x, y);
+                Tile tile = tiles.get(key);
+                if (tile != null) {
+                    recycle(tile);
+                    tiles.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the paths that changed since the last frame, and invalidates where they were and where they are now.
+     */
+    private void invalidateChanges(PersistentVector<DrawPath> paths) {
+        changes = 0;
+        paths.diff(renderedPaths, (index, oldPath, newPath) -> {
+            if (++changes > MAX_CHANGES) {
+                return;
+            }
+            if (oldPath != null) {
+                invalidate(oldPath.getBounds());
+            }
+            if (newPath != null) {
+                invalidate(newPath.getBounds());
+            }
+        });
+        if (changes > MAX_CHANGES) {
+            clear();
+        }
+    }
+
+    /**
+     * Rasterizes a tile.
+     *
+     * @return The bitmap for the tile, or null if no paths are in it
+     */
+    private Bitmap render(int x, int y, PersistentVector<DrawPath> paths, SpatialIndex index, float scale, float screenDensity) {
+        // Bounds of the tile in document coordinates
+        tileBounds.set(
+                x * TILE_SIZE / scale,
+                y * TILE_SIZE / scale,
+                (x + 1) * TILE_SIZE / scale,
+                (y + 1) * TILE_SIZE / scale
+        );
+        Bitmap bitmap = null;
+        int count = index.query(tileBounds);
+        for (int i = 0; i < count; i++) {
+            DrawPath path = paths.get(index.getResult(i));
+            if (bitmap == null) {
+                bitmap = obtainBitmap();
+                tileCanvas.setBitmap(bitmap);
+                tileCanvas.save();
+                tileCanvas.translate(-x * TILE_SIZE, -y * TILE_SIZE);
+                tileCanvas.scale(scale, scale);
+            }
+            path.draw(tileCanvas, screenDensity, scale);
+        }
+        if (bitmap != null) {
+            tileCanvas.restore();
+            tileCanvas.setBitmap(null);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Throws away tiles that weren't on the screen this frame.
+     */
+    private void evict() {
+        for (int i = tiles.size() - 1; i >= 0; i--) {
+            if (tiles.valueAt(i).frame != frame) {
+                recycle(tiles.valueAt(i));
+                tiles.removeAt(i);
+            }
+        }
+    }
+
+    private Bitmap obtainBitmap() {
+        if (pool.isEmpty()) {
+            return Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+        }
+        Bitmap bitmap = pool.remove(pool.size() - 1);
+        bitmap.eraseColor(Color.TRANSPARENT);
+        return bitmap;
+    }
+
+    private void recycle(Tile tile) {
+        if (tile.bitmap != null) {
+            pool.add(tile.bitmap);
+        }
+    }
+
+    /**
+     * Packs tile coordinates into one key for <code>tiles</code>
+     */
+    private static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A tile, and the last frame it was drawn in.
+     */
+    private static class Tile {
+        final Bitmap bitmap;
+        int frame;
+
+        Tile(Bitmap bitmap) {
+            this.bitmap = bitmap;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.pastthepixels.freepaint.History;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import io.github.pastthepixels.freepaint.Graphics.DrawPath;
+
+/**
+ * Adding a new path to the end of the document (ex. with the paint tool)
+ */
+public class AddPathCommand extends VersionCommand {
+    /**
+     * @param before <code>DrawCanvas.paths</code> from before the path was added
+     * @param after  <code>DrawCanvas.paths</code> with the new path at the end
+     */
+    public AddPathCommand(PersistentVector<DrawPath> before, PersistentVector<DrawPath> after) {
+        super(before, after);
+    }
+
+    static AddPathCommand read(DataInputStream in, PersistentVector<DrawPath> current, boolean applied) throws IOException {
+        if (applied) {
+            // We don't even need the path we saved, it's still in the document.
+            return new AddPathCommand(current.removeLast(), current);
+        }
+        return new AddPathCommand(current, current.append(HistoryFile.readPath(in)));
+    }
+
+    /**
+     * The new path is in the document, but once this is undone only the history has it.
+     */
+    public long estimateSize() {
+        return after.last().estimateSize() + nodesSize();
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeByte(TYPE_ADD);
+        HistoryFile.writePath(out, after.last());
+    }
+}
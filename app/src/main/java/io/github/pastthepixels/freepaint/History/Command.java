@@ -0,0 +1,31 @@
+package io.github.pastthepixels.freepaint.History;
+
+import io.github.pastthepixels.freepaint.Graphics.DrawCanvas;
+
+/**
+ * A single undoable operation on a DrawCanvas' paths.
+ * Tools do the actual work live and then push the command to <code>DrawCanvas.history</code>, so
+ * <code>apply</code> is only called when redoing.
+ */
+public interface Command {
+    /**
+     * (Re)applies the operation to a canvas.
+     *
+     * @param canvas The canvas the operation was recorded on
+     */
+    void apply(DrawCanvas canvas);
+
+    /**
+     * Reverts the operation, leaving the canvas how it looked right before the operation happened.
+     *
+     * @param canvas The canvas the operation was recorded on
+     */
+    void revert(DrawCanvas canvas);
+
+    /**
+     * Roughly estimates how much memory is kept around only because this command is in the history.
+     *
+     * @return An estimate in bytes
+     */
+    long estimateSize();
+}
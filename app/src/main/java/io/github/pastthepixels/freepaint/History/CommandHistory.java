@@ -0,0 +1,223 @@
+package io.github.pastthepixels.freepaint.History;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import io.github.pastthepixels.freepaint.Graphics.DrawCanvas;
+
+/**
+ * Undo/redo history made of commands (see <code>Command</code>).
+ * You can move back and forth between commands, but every time you push a new one
+ * it removes everything after the current index (solving the grandfather paradox, btw)
+ * <p>
+ * Instead of a maximum number of commands, the history has a memory budget. Once the commands in memory are
+ * estimated to take up more than that, the oldest ones are written to a <code>HistoryFile</code> and only read
+ * back if you undo/redo that far.
+ */
+public class CommandHistory {
+    /**
+     * Default memory budget, in bytes
+     */
+    public static final long DEFAULT_BYTE_BUDGET = 64L * 1024 * 1024;
+
+    private final ArrayList<Command> commands = new ArrayList<>();
+
+    /**
+     * Estimated size of each command in <code>commands</code> (they can be slow to estimate so we only do it once)
+     */
+    private final ArrayList<Long> sizes = new ArrayList<>();
+
+    /**
+     * Where each command was spilled to the file, kept after it's paged back in so spilling it again reuses that
+     * record instead of writing another one (null if it was never spilled)
+     */
+    private final ArrayList<SpilledCommand> records = new ArrayList<>();
+
+    /**
+     * Where commands are spilled to. If this is null, commands past the budget are forgotten instead.
+     */
+    private final HistoryFile file;
+
+    /**
+     * Number of commands that are currently applied, i.e. the index of the next command to redo.
+     */
+    private int index = 0;
+
+    private long byteBudget = DEFAULT_BYTE_BUDGET;
+
+    /**
+     * Estimated number of bytes used by the commands that are in memory
+     */
+    private long memoryUsed = 0;
+
+    /**
+     * @param file Where to write commands when the history goes past its memory budget
+     */
+    public CommandHistory(HistoryFile file) {
+        this.file = file;
+    }
+
+    /**
+     * Records a command that was just performed.
+     *
+     * @param command The command. It should already be applied to the canvas!
+     */
+    public void push(Command command) {
+        // Remove any commands after the current.
+        while (commands.size() > index) {
+            remove(commands.size() - 1);
+        }
+        truncateFile();
+        commands.add(command); // adds to the end ∴ newest changes are at the end of the list
+        sizes.add(command.estimateSize());
+        records.add(null);
+        memoryUsed += sizes.get(sizes.size() - 1);
+        index += 1;
+        enforceBudget();
+    }
+
+    /**
+     * Reverts the last applied command.
+     *
+     * @return Whether or not there was anything to undo
+     */
+    public boolean undo(DrawCanvas canvas) {
+        if (index == 0 || !pageIn(index - 1, canvas, true)) return false;
+        index -= 1;
+        commands.get(index).revert(canvas);
+        enforceBudget();
+        return true;
+    }
+
+    /**
+     * Reapplies the last undone command.
+     *
+     * @return Whether or not there was anything to redo
+     */
+    public boolean redo(DrawCanvas canvas) {
+        if (index >= commands.size() || !pageIn(index, canvas, false)) return false;
+        commands.get(index).apply(canvas);
+        index += 1;
+        enforceBudget();
+        return true;
+    }
+
+    /**
+     * Forgets every command.
+     */
+    public void clear() {
+        commands.clear();
+        sizes.clear();
+        records.clear();
+        index = 0;
+        memoryUsed = 0;
+        truncateFile();
+    }
+
+    /**
+     * Sets how much memory the history can use before commands are written to disk.
+     *
+     * @param byteBudget The budget, in bytes
+     */
+    public void setByteBudget(long byteBudget) {
+        this.byteBudget = byteBudget;
+        enforceBudget();
+    }
+
+    /**
+     * @return Estimated number of bytes used by the commands that are in memory
+     */
+    public long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    /**
+     * Spills the oldest commands in memory to the file until we're within the budget. The commands
+     * right before and after the current index are always kept in memory, so undoing/redoing one step is instant.
+     */
+    private void enforceBudget() {
+        for (int i = 0; memoryUsed > byteBudget && i < commands.size(); i++) {
+            if (i == index - 1 || i == index || !(commands.get(i) instanceof VersionCommand)) {
+                continue;
+            }
+            try {
+                if (file == null) throw new IOException("No history file");
+                // Commands are never changed, so if this one was spilled before, its record is still right
+                SpilledCommand spilled = records.get(i);
+                if (spilled == null) {
+                    spilled = file.write((VersionCommand) commands.get(i));
+                    records.set(i, spilled);
+                }
+                memoryUsed += spilled.estimateSize() - sizes.get(i);
+                commands.set(i, spilled);
+                sizes.set(i, spilled.estimateSize());
+            } catch (IOException e) {
+                // If we can't write to the file, we have to forget the oldest changes
+                e.printStackTrace();
+                forgetUntil(i);
+                i = -1;
+            }
+        }
+    }
+
+    /**
+     * Reads a command back into memory if it was spilled.
+     *
+     * @param i       Index of the command
+     * @param canvas  The canvas the history is for
+     * @param applied Whether the command is currently applied
+     * @return Whether or not the command can be used
+     */
+    private boolean pageIn(int i, DrawCanvas canvas, boolean applied) {
+        if (!(commands.get(i) instanceof SpilledCommand)) return true;
+        try {
+            // (The SpilledCommand stays in records, so the command can be spilled again without rewriting it)
+            VersionCommand command = ((SpilledCommand) commands.get(i)).pageIn(canvas.paths, applied);
+            long size = command.estimateSize();
+            memoryUsed += size - sizes.get(i);
+            commands.set(i, command);
+            sizes.set(i, size);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // The file is gone or broken, so we can't go back any further than this
+            e.printStackTrace();
+            if (applied) {
+                forgetUntil(i);
+            } else {
+                while (commands.size() > i) remove(commands.size() - 1);
+                truncateFile();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Forgets every command up to and including <code>last</code>.
+     */
+    private void forgetUntil(int last) {
+        for (int i = 0; i <= last; i++) {
+            remove(0);
+            index = Math.max(0, index - 1);
+        }
+    }
+
+    private void remove(int i) {
+        memoryUsed -= sizes.remove(i);
+        commands.remove(i);
+        records.remove(i);
+    }
+
+    /**
+     * Throws away the end of the file if none of our commands need it anymore.
+     */
+    private void truncateFile() {
+        if (file == null) return;
+        long end = 0;
+        for (SpilledCommand record : records) {
+            if (record != null) {
+                end = Math.max(end, record.getEnd());
+            }
+        }
+        file.truncate(end);
+    }
+}
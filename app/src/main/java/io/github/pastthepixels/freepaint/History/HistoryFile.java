@@ -0,0 +1,167 @@
+package io.github.pastthepixels.freepaint.History;
+
+import android.graphics.Matrix;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import io.github.pastthepixels.freepaint.Graphics.DrawAppearance;
+import io.github.pastthepixels.freepaint.Graphics.DrawPath;
+import io.github.pastthepixels.freepaint.Graphics.Point;
+import io.github.pastthepixels.freepaint.Graphics.PointBuffer;
+
+/**
+ * An append-only file that commands get written to when the undo history grows past its memory budget.
+ * Each command is written as one record, and read back (see <code>SpilledCommand</code>) when you undo/redo that far.
+ * The file is private to the app and only lasts as long as the history does.
+ */
+public class HistoryFile {
+    private final File file;
+
+    private RandomAccessFile data;
+
+    /**
+     * Doesn't touch the file yet: it's opened (and cleared, in case it's left over from last time) the first time a
+     * command is written or read.
+     *
+     * @param file Where to store the file -- somewhere app-private like <code>Context.getNoBackupFilesDir()</code>
+     */
+    public HistoryFile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Writes a command to the end of the file.
+     *
+     * @param command The command to write
+     * @return A SpilledCommand pointing to the record that was written
+     * @throws IOException If the file couldn't be written to
+     */
+    public SpilledCommand write(VersionCommand command) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        command.write(new DataOutputStream(bytes));
+        RandomAccessFile data = open();
+        long offset = data.length();
+        data.seek(offset);
+        data.write(bytes.toByteArray());
+        return new SpilledCommand(this, offset, bytes.size());
+    }
+
+    /**
+     * Reads a record back from the file.
+     *
+     * @param offset Where the record starts
+     * @param length How many bytes long the record is
+     * @return A stream with the contents of the record
+     * @throws IOException If the file couldn't be read from
+     */
+    DataInputStream read(long offset, int length) throws IOException {
+        RandomAccessFile data = open();
+        byte[] bytes = new byte[length];
+        data.seek(offset);
+        data.readFully(bytes);
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Throws away everything after <code>length</code> bytes (ex. when the redo history is removed)
+     *
+     * @param length The new length of the file
+     */
+    public void truncate(long length) {
+        try {
+            if (data != null && data.length() > length) {
+                data.setLength(length);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private RandomAccessFile open() throws IOException {
+        if (data == null) {
+            data = new RandomAccessFile(file, "rw");
+            data.setLength(0);
+        }
+        return data;
+    }
+
+    /**
+     * Writes everything about a path that's needed to recreate it.
+     *
+     * @param out  Stream to write to
+     * @param path The path to write
+     * @throws IOException From <code>out</code>
+     */
+    static void writePath(DataOutputStream out, DrawPath path) throws IOException {
+        DrawAppearance appearance = path.appearance;
+        out.writeInt(appearance.stroke);
+        out.writeInt(appearance.fill);
+        out.writeInt(appearance.strokeSize);
+        out.writeBoolean(appearance.useDP);
+        out.writeByte(appearance.effect.ordinal());
+        out.writeBoolean(path.isClosed);
+        out.writeBoolean(path.drawPoints);
+        // The transform (if there is one) as its first six values, since it's always affine
+        out.writeBoolean(path.getTransform() != null);
+        if (path.getTransform() != null) {
+            float[] values = new float[9];
+            path.getTransform().getValues(values);
+            for (int i = 0; i < 6; i++) {
+                out.writeFloat(values[i]);
+            }
+        }
+        out.writeInt(path.points.size());
+        PointBuffer points = path.points;
+        for (int i = 0; i < points.size(); i++) {
+            out.writeFloat(points.getX(i));
+            out.writeFloat(points.getY(i));
+            out.writeByte(points.getCommand(i).ordinal());
+            out.writeInt(points.getColor(i));
+            out.writeFloat(points.getLeftHandleX(i) - points.getX(i));
+            out.writeFloat(points.getLeftHandleY(i) - points.getY(i));
+            out.writeFloat(points.getRightHandleX(i) - points.getX(i));
+            out.writeFloat(points.getRightHandleY(i) - points.getY(i));
+        }
+    }
+
+    /**
+     * Reads a path written with <code>writePath</code>.
+     *
+     * @param in Stream to read from
+     * @return A new path, with its <code>android.graphics.Path</code> already cached
+     * @throws IOException From <code>in</code>
+     */
+    static DrawPath readPath(DataInputStream in) throws IOException {
+        DrawPath path = new DrawPath(null);
+        path.appearance = new DrawAppearance(in.readInt(), in.readInt(), in.readInt());
+        path.appearance.useDP = in.readBoolean();
+        path.appearance.effect = DrawAppearance.EFFECTS.values()[in.readByte()];
+        path.isClosed = in.readBoolean();
+        path.drawPoints = in.readBoolean();
+        if (in.readBoolean()) {
+            float[] values = new float[9];
+            for (int i = 0; i < 6; i++) {
+                values[i] = in.readFloat();
+            }
+            values[Matrix.MPERSP_2] = 1;
+            Matrix transform = new Matrix();
+            transform.setValues(values);
+            path.setTransform(transform);
+        }
+        int count = in.readInt();
+        Point.COMMANDS[] commands = Point.COMMANDS.values();
+        path.points = new PointBuffer(count);
+        for (int i = 0; i < count; i++) {
+            path.points.add(in.readFloat(), in.readFloat(), commands[in.readByte()], in.readInt());
+            path.points.setHandles(i, in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat());
+        }
+        path.cachePath();
+        return path;
+    }
+}
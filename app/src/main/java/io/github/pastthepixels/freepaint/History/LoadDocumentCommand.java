@@ -0,0 +1,110 @@
+package io.github.pastthepixels.freepaint.History;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import io.github.pastthepixels.freepaint.Graphics.DrawCanvas;
+import io.github.pastthepixels.freepaint.Graphics.DrawPath;
+import io.github.pastthepixels.freepaint.Graphics.Point;
+
+/**
+ * Replacing the whole document (ex. loading an SVG). Also holds on to the document size/color,
+ * since loading a file changes those too.
+ */
+public class LoadDocumentCommand extends VersionCommand {
+    private final Point oldSize;
+    private final int oldColor;
+
+    private final Point newSize;
+    private final int newColor;
+
+    /**
+     * Records a new document from what the canvas currently looks like.
+     *
+     * @param canvas   The canvas, after the document was loaded
+     * @param before   <code>DrawCanvas.paths</code> from before the document was loaded
+     * @param oldSize  <code>DrawCanvas.documentSize</code> from before the document was loaded
+     * @param oldColor <code>DrawCanvas.documentColor</code> from before the document was loaded
+     */
+    public LoadDocumentCommand(DrawCanvas canvas, PersistentVector<DrawPath> before, Point oldSize, int oldColor) {
+        this(before, canvas.paths, oldSize, oldColor, canvas.documentSize, canvas.documentColor);
+    }
+
+    private LoadDocumentCommand(PersistentVector<DrawPath> before, PersistentVector<DrawPath> after, Point oldSize, int oldColor, Point newSize, int newColor) {
+        super(before, after);
+        this.oldSize = oldSize.clone();
+        this.oldColor = oldColor;
+        this.newSize = newSize.clone();
+        this.newColor = newColor;
+    }
+
+    static LoadDocumentCommand read(DataInputStream in, PersistentVector<DrawPath> current, boolean applied) throws IOException {
+        Point oldSize = new Point(in.readFloat(), in.readFloat());
+        int oldColor = in.readInt();
+        Point newSize = new Point(in.readFloat(), in.readFloat());
+        int newColor = in.readInt();
+        // Both documents were saved, but we only need the one that isn't the current one
+        PersistentVector<DrawPath> oldPaths = readPaths(in);
+        PersistentVector<DrawPath> newPaths = readPaths(in);
+        PersistentVector<DrawPath> other = applied ? oldPaths : newPaths;
+        return applied
+                ? new LoadDocumentCommand(other, current, oldSize, oldColor, newSize, newColor)
+                : new LoadDocumentCommand(current, other, oldSize, oldColor, newSize, newColor);
+    }
+
+    private static PersistentVector<DrawPath> readPaths(DataInputStream in) throws IOException {
+        ArrayList<DrawPath> paths = new ArrayList<>();
+        for (int count = in.readInt(); count > 0; count--) {
+            paths.add(HistoryFile.readPath(in));
+        }
+        return PersistentVector.from(paths);
+    }
+
+    @Override
+    public void apply(DrawCanvas canvas) {
+        super.apply(canvas);
+        canvas.documentSize.set(newSize);
+        canvas.documentColor = newColor;
+    }
+
+    @Override
+    public void revert(DrawCanvas canvas) {
+        super.revert(canvas);
+        canvas.documentSize.set(oldSize);
+        canvas.documentColor = oldColor;
+    }
+
+    /**
+     * The old document is only kept by the history.
+     */
+    public long estimateSize() {
+        long size = 0;
+        for (DrawPath path : before) {
+            size += path.estimateSize();
+        }
+        return size + (before.size() / 32 + 1) * NODE_SIZE;
+    }
+
+    /**
+     * Unlike other commands, this can't be written as a list of changes, so both documents are written.
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeByte(TYPE_LOAD);
+        out.writeFloat(oldSize.x);
+        out.writeFloat(oldSize.y);
+        out.writeInt(oldColor);
+        out.writeFloat(newSize.x);
+        out.writeFloat(newSize.y);
+        out.writeInt(newColor);
+        out.writeInt(before.size());
+        for (DrawPath path : before) {
+            HistoryFile.writePath(out, path);
+        }
+        out.writeInt(after.size());
+        for (DrawPath path : after) {
+            HistoryFile.writePath(out, path);
+        }
+    }
+}
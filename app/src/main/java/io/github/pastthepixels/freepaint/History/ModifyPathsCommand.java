@@ -0,0 +1,80 @@
+package io.github.pastthepixels.freepaint.History;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import io.github.pastthepixels.freepaint.Graphics.DrawPath;
+
+/**
+ * Changing one or more paths (ex. erasing part of them). The changed paths are new copies
+ * (see <code>DrawPath</code>), so the old ones are still around in <code>before</code>.
+ */
+public class ModifyPathsCommand extends VersionCommand {
+    /**
+     * Indices of the paths that were changed
+     */
+    protected final int[] indices;
+
+    /**
+     * @param before  <code>DrawCanvas.paths</code> from before the paths were changed
+     * @param after   <code>DrawCanvas.paths</code> with changed copies of the paths
+     * @param indices Indices of the paths that were changed
+     */
+    public ModifyPathsCommand(PersistentVector<DrawPath> before, PersistentVector<DrawPath> after, List<Integer> indices) {
+        this(before, after, toArray(indices));
+    }
+
+    protected ModifyPathsCommand(PersistentVector<DrawPath> before, PersistentVector<DrawPath> after, int[] indices) {
+        super(before, after);
+        this.indices = indices;
+    }
+
+    static ModifyPathsCommand read(DataInputStream in, PersistentVector<DrawPath> current, boolean applied, boolean translate) throws IOException {
+        int[] indices = new int[in.readInt()];
+        PersistentVector<DrawPath> other = current;
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = in.readInt();
+            DrawPath oldPath = HistoryFile.readPath(in);
+            DrawPath newPath = HistoryFile.readPath(in);
+            other = other.set(indices[i], applied ? oldPath : newPath);
+        }
+        PersistentVector<DrawPath> before = applied ? other : current;
+        PersistentVector<DrawPath> after = applied ? current : other;
+        return translate ? new TranslatePathsCommand(before, after, indices) : new ModifyPathsCommand(before, after, indices);
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * The old paths are only kept by the history.
+     */
+    public long estimateSize() {
+        long size = 0;
+        for (int index : indices) {
+            size += before.get(index).estimateSize() + nodesSize();
+        }
+        return size;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeByte(TYPE_MODIFY);
+        writeChanges(out);
+    }
+
+    protected void writeChanges(DataOutputStream out) throws IOException {
+        out.writeInt(indices.length);
+        for (int index : indices) {
+            out.writeInt(index);
+            HistoryFile.writePath(out, before.get(index));
+            HistoryFile.writePath(out, after.get(index));
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package io.github.pastthepixels.freepaint.History;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable list that shares structure between versions of itself, used to store a document's paths.
+ * Items are kept in a tree where each node has 32 children (like Clojure's vectors), plus a "tail"
+ * array with the last few items so that appending is cheap.
+ * <p>
+ * Changing an item (<code>set</code>, <code>append</code>, <code>removeLast</code>) returns a new vector and
+ * leaves this one alone. Only the nodes on the way to the changed item are copied (log32(n) of them, so
+ * 3 for a 32768 item document) -- every other node is shared with the old version.
+ * This is what lets us keep hundreds of versions around for undo/redo: each one only costs as much as
+ * the change made to it, and undoing is just switching back to an older vector.
+ *
+ * @param <T> The type of the items. These should be treated as immutable too, or changing one will change every version!
+ */
+public final class PersistentVector<T> implements Iterable<T> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, BITS, new Object[WIDTH], new Object[0]);
+
+    /**
+     * Number of items
+     */
+    private final int size;
+
+    /**
+     * How many bits to shift an index by to get the index of the child in the root node
+     */
+    private final int shift;
+
+    /**
+     * Root of the tree. Every node has WIDTH children, where leaves hold the items themselves
+     */
+    private final Object[] root;
+
+    /**
+     * The last (up to WIDTH) items, which aren't in the tree yet
+     */
+    private final Object[] tail;
+
+    private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    /**
+     * @return An empty vector (there's only ever one)
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentVector<T> empty() {
+        return (PersistentVector<T>) EMPTY;
+    }
+
+    /**
+     * Creates a vector with every item in a collection, in order.
+     *
+     * @param items The items to add
+     * @return A new vector
+     */
+    public static <T> PersistentVector<T> from(Collection<? extends T> items) {
+        PersistentVector<T> vector = empty();
+        for (T item : items) {
+            vector = vector.append(item);
+        }
+        return vector;
+    }
+
+    /**
+     * @return The number of items in the vector
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Whether or not there are no items
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets an item.
+     *
+     * @param index Index of the item
+     * @return The item at <code>index</code>
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        return (T) leafFor(index)[index & MASK];
+    }
+
+    /**
+     * Gets the last item.
+     *
+     * @return The item with the largest index
+     */
+    public T last() {
+        return get(size - 1);
+    }
+
+    /**
+     * Replaces an item.
+     *
+     * @param index Index of the item to replace
+     * @param item  The new item
+     * @return A new vector with the item replaced
+     */
+    public PersistentVector<T> set(int index, T item) {
+        checkIndex(index);
+        if (index >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = item;
+            return new PersistentVector<>(size, shift, root, newTail);
+        }
+        return new PersistentVector<>(size, shift, set(shift, root, index, item), tail);
+    }
+
+    /**
+     * Adds an item to the end of the vector.
+     *
+     * @param item The item to add
+     * @return A new vector with the item at the end
+     */
+    public PersistentVector<T> append(T item) {
+        // There's still room in the tail
+        if (size - tailOffset() < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = item;
+            return new PersistentVector<>(size + 1, shift, root, newTail);
+        }
+        // Otherwise, the tail is full and gets pushed into the tree as a leaf
+        Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            // ...and the tree is full too, so it gets one level taller
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return new PersistentVector<>(size + 1, newShift, newRoot, new Object[]{item});
+    }
+
+    /**
+     * Removes the last item from the vector.
+     *
+     * @return A new vector without the last item
+     */
+    public PersistentVector<T> removeLast() {
+        if (size == 0) {
+            throw new IllegalStateException("Can't remove from an empty vector");
+        }
+        if (size == 1) {
+            return empty();
+        }
+        if (size - tailOffset() > 1) {
+            return new PersistentVector<>(size - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+        }
+        // The tail only has one item, so the last leaf of the tree becomes the tail
+        Object[] newTail = leafFor(size - 2);
+        Object[] newRoot = popTail(shift, root);
+        int newShift = shift;
+        if (newRoot == null) {
+            newRoot = new Object[WIDTH];
+        }
+        if (shift > BITS && newRoot[1] == null) {
+            newRoot = (Object[]) newRoot[0];
+            newShift -= BITS;
+        }
+        return new PersistentVector<>(size - 1, newShift, newRoot, newTail);
+    }
+
+    /**
+     * Finds every index where this vector and another version of it have different items (compared by identity).
+     * Leaves that are shared between the two are skipped without looking at their items, so this only takes
+     * about size/32 steps plus the number of changes.
+     *
+     * @param old      The other vector
+     * @param listener Called for each index with a different item. If an index only exists in one of the vectors,
+     *                 the item from the other one is null.
+     */
+    public void diff(PersistentVector<T> old, DiffListener<T> listener) {
+        int common = Math.min(size, old.size);
+        for (int start = 0; start < common; start += WIDTH) {
+            Object[] leaf = leafFor(start);
+            Object[] oldLeaf = old.leafFor(start);
+            if (leaf == oldLeaf) {
+                continue;
+            }
+            for (int i = start; i < Math.min(start + WIDTH, common); i++) {
+                if (leaf[i & MASK] != oldLeaf[i & MASK]) {
+                    listener.changed(i, old.get(i), get(i));
+                }
+            }
+        }
+        for (int i = common; i < size; i++) {
+            listener.changed(i, null, get(i));
+        }
+        for (int i = common; i < old.size; i++) {
+            listener.changed(i, old.get(i), null);
+        }
+    }
+
+    /**
+     * Iterates over every item, in order. Each leaf is only looked up once.
+     */
+    @NonNull
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int index = 0;
+            private Object[] leaf = size > 0 ? leafFor(0) : null;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public T next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                if (index != 0 && (index & MASK) == 0) {
+                    leaf = leafFor(index);
+                }
+                return (T) leaf[index++ & MASK];
+            }
+        };
+    }
+
+    /**
+     * @return Index of the first item in the tail
+     */
+    private int tailOffset() {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    /**
+     * Listener for <code>PersistentVector.diff</code>
+     */
+    public interface DiffListener<T> {
+        /**
+         * @param index   Index of the item that changed
+         * @param oldItem The item in the old vector, or null if the old vector is too short
+         * @param newItem The item in the new vector, or null if the new vector is too short
+         */
+        void changed(int index, T oldItem, T newItem);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+    }
+
+    /**
+     * @return The leaf (or tail) that holds the item at <code>index</code>
+     */
+    private Object[] leafFor(int index) {
+        checkIndex(index);
+        if (index >= tailOffset()) {
+            return tail;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private static Object[] set(int level, Object[] node, int index, Object item) {
+        Object[] copy = node.clone();
+        if (level == 0) {
+            copy[index & MASK] = item;
+        } else {
+            int child = (index >>> level) & MASK;
+            copy[child] = set(level - BITS, (Object[]) node[child], index, item);
+        }
+        return copy;
+    }
+
+    /**
+     * Makes a chain of nodes <code>level</code> high down to a leaf.
+     */
+    private static Object[] newPath(int level, Object[] leaf) {
+        if (level == 0) {
+            return leaf;
+        }
+        Object[] node = new Object[WIDTH];
+        node[0] = newPath(level - BITS, leaf);
+        return node;
+    }
+
+    /**
+     * Copies the path to the last leaf, adding <code>leaf</code> after it.
+     */
+    private Object[] pushTail(int level, Object[] parent, Object[] leaf) {
+        int child = ((size - 1) >>> level) & MASK;
+        Object[] copy = parent.clone();
+        if (level == BITS) {
+            copy[child] = leaf;
+        } else if (parent[child] != null) {
+            copy[child] = pushTail(level - BITS, (Object[]) parent[child], leaf);
+        } else {
+            copy[child] = newPath(level - BITS, leaf);
+        }
+        return copy;
+    }
+
+    /**
+     * Copies the path to the last leaf without that leaf. Returns null if a node would be left empty.
+     */
+    private Object[] popTail(int level, Object[] node) {
+        int child = ((size - 2) >>> level) & MASK;
+        if (level > BITS) {
+            Object[] newChild = popTail(level - BITS, (Object[]) node[child]);
+            if (newChild == null && child == 0) {
+                return null;
+            }
+            Object[] copy = node.clone();
+            copy[child] = newChild;
+            return copy;
+        } else if (child == 0) {
+            return null;
+        }
+        Object[] copy = node.clone();
+        copy[child] = null;
+        return copy;
+    }
+}
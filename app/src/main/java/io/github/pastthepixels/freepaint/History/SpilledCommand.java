@@ -0,0 +1,68 @@
+package io.github.pastthepixels.freepaint.History;
+
+import java.io.IOException;
+
+import io.github.pastthepixels.freepaint.Graphics.DrawCanvas;
+import io.github.pastthepixels.freepaint.Graphics.DrawPath;
+
+/**
+ * A command that was written to a <code>HistoryFile</code> to save memory. It has to be read back
+ * (paged in) before it can be undone or redone -- <code>CommandHistory</code> does this for you.
+ */
+public class SpilledCommand implements Command {
+    private final HistoryFile file;
+
+    /**
+     * Where the command's record starts in the file, and how long it is
+     */
+    private final long offset;
+    private final int length;
+
+    SpilledCommand(HistoryFile file, long offset, int length) {
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Reads the command back from the file.
+     *
+     * @param current The current version of <code>DrawCanvas.paths</code>
+     * @param applied Whether the command is currently applied or not
+     * @return The command that was spilled
+     * @throws IOException If the file couldn't be read
+     */
+    public VersionCommand pageIn(PersistentVector<DrawPath> current, boolean applied) throws IOException {
+        return VersionCommand.read(file.read(offset, length), current, applied);
+    }
+
+    /**
+     * @return Where the record for this command ends in the file
+     */
+    public long getEnd() {
+        return offset + length;
+    }
+
+    public void apply(DrawCanvas canvas) {
+        try {
+            pageIn(canvas.paths, false).apply(canvas);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void revert(DrawCanvas canvas) {
+        try {
+            pageIn(canvas.paths, true).revert(canvas);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Nothing but this object is kept in memory.
+     */
+    public long estimateSize() {
+        return 32;
+    }
+}
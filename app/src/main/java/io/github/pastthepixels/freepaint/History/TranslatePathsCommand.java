@@ -0,0 +1,31 @@
+package io.github.pastthepixels.freepaint.History;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import io.github.pastthepixels.freepaint.Graphics.DrawPath;
+
+/**
+ * Moving a selection of paths by some amount.
+ */
+public class TranslatePathsCommand extends ModifyPathsCommand {
+    /**
+     * @param before  <code>DrawCanvas.paths</code> from before the selection was moved
+     * @param after   <code>DrawCanvas.paths</code> with moved copies of the selected paths
+     * @param indices Indices of the selected paths
+     */
+    public TranslatePathsCommand(PersistentVector<DrawPath> before, PersistentVector<DrawPath> after, List<Integer> indices) {
+        super(before, after, indices);
+    }
+
+    TranslatePathsCommand(PersistentVector<DrawPath> before, PersistentVector<DrawPath> after, int[] indices) {
+        super(before, after, indices);
+    }
+
+    @Override
+    void write(DataOutputStream out) throws IOException {
+        out.writeByte(TYPE_TRANSLATE);
+        writeChanges(out);
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.pastthepixels.freepaint.History;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import io.github.pastthepixels.freepaint.Graphics.DrawCanvas;
+import io.github.pastthepixels.freepaint.Graphics.DrawPath;
+
+/**
+ * A command that remembers the versions of <code>DrawCanvas.paths</code> from before and after it happened.
+ * Since the paths are stored in a <code>PersistentVector</code>, both versions share every path that
+ * wasn't changed, so this only costs as much as the change. Undoing and redoing just switches between them.
+ * <p>
+ * Commands can also be written to a <code>HistoryFile</code>. Only the changes are written, so when they're read back
+ * they have to be applied to (or reverted from) the current version of the document to get the other one.
+ */
+public abstract class VersionCommand implements Command {
+    /**
+     * Estimate of the bytes it takes to copy a node in a PersistentVector (32 references + header)
+     */
+    protected static final long NODE_SIZE = 144;
+
+    // Types of records in a HistoryFile
+    static final byte TYPE_ADD = 0;
+    static final byte TYPE_MODIFY = 1;
+    static final byte TYPE_TRANSLATE = 2;
+    static final byte TYPE_LOAD = 3;
+
+    protected final PersistentVector<DrawPath> before;
+    protected final PersistentVector<DrawPath> after;
+
+    /**
+     * @param before <code>DrawCanvas.paths</code> from before the operation
+     * @param after  <code>DrawCanvas.paths</code> from after the operation
+     */
+    protected VersionCommand(PersistentVector<DrawPath> before, PersistentVector<DrawPath> after) {
+        this.before = before;
+        this.after = after;
+    }
+
+    /**
+     * Reads a command written with <code>write</code>, recreating whichever version of the document isn't the current one.
+     *
+     * @param in      Stream to read from
+     * @param current The current version of <code>DrawCanvas.paths</code>
+     * @param applied Whether the command is currently applied (<code>current</code> is the version from after it)
+     *                or not (<code>current</code> is the version from before it)
+     * @return A new command, just like the one that was written
+     * @throws IOException From <code>in</code>
+     */
+    static VersionCommand read(DataInputStream in, PersistentVector<DrawPath> current, boolean applied) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_ADD:
+                return AddPathCommand.read(in, current, applied);
+            case TYPE_MODIFY:
+            case TYPE_TRANSLATE:
+                return ModifyPathsCommand.read(in, current, applied, type == TYPE_TRANSLATE);
+            case TYPE_LOAD:
+                return LoadDocumentCommand.read(in, current, applied);
+            default:
+                throw new IOException("Unknown history record type " + type);
+        }
+    }
+
+    public void apply(DrawCanvas canvas) {
+        canvas.paths = after;
+    }
+
+    public void revert(DrawCanvas canvas) {
+        canvas.paths = before;
+    }
+
+    /**
+     * Writes the changes this command made, so it can be recreated with <code>VersionCommand.read</code>.
+     *
+     * @param out Stream to write to
+     * @throws IOException From <code>out</code>
+     */
+    abstract void write(DataOutputStream out) throws IOException;
+
+    /**
+     * Estimates the nodes of the vector that had to be copied to change one path
+     */
+    protected long nodesSize() {
+        long size = NODE_SIZE;
+        for (int count = Math.max(before.size(), after.size()); count > 32; count >>>= 5) {
+            size += NODE_SIZE;
+        }
+        return size;
+    }
+}
@@ -11,6 +11,7 @@ import android.graphics.Color;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Process;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -41,9 +42,14 @@ import com.rarepebble.colorpicker.ColorPickerView;
 import com.rarepebble.colorpicker.ColorPreference;
 import com.takisoft.preferencex.PreferenceFragmentCompat;
 
+import java.io.BufferedWriter;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
+import io.github.pastthepixels.freepaint.Debug.Tracer;
 import io.github.pastthepixels.freepaint.Graphics.DrawCanvas;
 import io.github.pastthepixels.freepaint.databinding.ActivityMainBinding;
 
@@ -106,6 +112,24 @@ public class MainActivity extends AppCompatActivity {
             }
     );
 
+    private final ActivityResultLauncher<Intent> activityResultLauncherExportTrace = registerForActivityResult(
+            new ActivityResultContracts.StartActivityForResult(),
+            (result) -> {
+                if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null) {
+                    Uri uri = result.getData().getData();
+                    try (OutputStream stream = getApplicationContext().getContentResolver().openOutputStream(Objects.requireNonNull(uri), "wt")) {
+                        assert stream != null;
+                        Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+                        Tracer.writeJson(writer, Process.myPid());
+                        writer.flush();
+                    } catch (Exception e) {
+                        Toast.makeText(getApplicationContext(), "An error was encountered while saving.", Toast.LENGTH_LONG).show();
+                        e.printStackTrace();
+                    }
+                }
+            }
+    );
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -176,6 +200,9 @@ public class MainActivity extends AppCompatActivity {
         // Sets default tool
         setTool(R.id.select_tool_paintbrush);
 
+        setRenderThreadEnabled(PreferenceManager.getDefaultSharedPreferences(this).getBoolean("useRenderThread", false));
+        setPerformanceOverlayEnabled(PreferenceManager.getDefaultSharedPreferences(this).getBoolean("showPerformanceOverlay", false));
+
         updateBottomBarColors(
                 PreferenceManager.getDefaultSharedPreferences(getApplicationContext()).getInt("fillColor", 0x10000000),
                 PreferenceManager.getDefaultSharedPreferences(getApplicationContext()).getInt("strokeColor", 0x10000000)
@@ -209,6 +236,34 @@ public class MainActivity extends AppCompatActivity {
         binding.drawCanvas.invalidate();
     }
 
+    /**
+     * Switches the drawCanvas between drawing on the UI thread and drawing on a render thread.
+     *
+     * @param enabled Whether or not to use the render thread
+     */
+    public void setRenderThreadEnabled(boolean enabled) {
+        binding.drawCanvas.setRenderSurface(enabled ? binding.renderSurface : null);
+    }
+
+    /**
+     * Shows or hides frame times, draw counts and memory use on top of the drawCanvas, and the menu item to export traces.
+     *
+     * @param enabled Whether or not to show the performance overlay
+     */
+    public void setPerformanceOverlayEnabled(boolean enabled) {
+        binding.drawCanvas.setPerformanceOverlayEnabled(enabled);
+        binding.bottomAppBar.getMenu().findItem(R.id.action_export_trace).setVisible(enabled);
+    }
+
+    /**
+     * Sets how much memory the undo history of the drawCanvas can use.
+     *
+     * @param megabytes The memory budget, in MB
+     */
+    public void setHistoryBudget(float megabytes) {
+        binding.drawCanvas.setHistoryBudget(megabytes);
+    }
+
     /**
      * Switches the DrawCanvas tool when a tool has been selected from the UI.
      *
@@ -265,6 +320,16 @@ public class MainActivity extends AppCompatActivity {
             return true;
         }
 
+        if (id == R.id.action_export_trace) {
+            Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            intent.setType("application/json");
+            intent.putExtra(Intent.EXTRA_TITLE, "trace.json");
+            intent = Intent.createChooser(intent, "Export trace");
+            activityResultLauncherExportTrace.launch(intent);
+            return true;
+        }
+
         if (id == R.id.action_undo) {
             binding.drawCanvas.undo();
         }
@@ -330,6 +395,9 @@ public class MainActivity extends AppCompatActivity {
                         sharedPreferences.getInt("fillColor", 0x10000000),
                         sharedPreferences.getInt("strokeColor", 0x10000000)
                 );
+                activity.setHistoryBudget(Float.parseFloat(sharedPreferences.getString("historyBudget", "64")));
+                activity.setRenderThreadEnabled(sharedPreferences.getBoolean("useRenderThread", false));
+                activity.setPerformanceOverlayEnabled(sharedPreferences.getBoolean("showPerformanceOverlay", false));
             }
         }
 
@@ -1,13 +1,25 @@
 package io.github.pastthepixels.freepaint.Tools;
 
 import android.graphics.Color;
+import android.graphics.RectF;
 import android.view.MotionEvent;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+import io.github.pastthepixels.freepaint.Debug.Metrics;
+import io.github.pastthepixels.freepaint.Debug.Tracer;
 import io.github.pastthepixels.freepaint.Graphics.DrawAppearance;
 import io.github.pastthepixels.freepaint.Graphics.DrawCanvas;
 import io.github.pastthepixels.freepaint.Graphics.DrawPath;
+import io.github.pastthepixels.freepaint.Graphics.Point;
+import io.github.pastthepixels.freepaint.Graphics.PointBuffer;
+import io.github.pastthepixels.freepaint.Graphics.SpatialIndex;
+import io.github.pastthepixels.freepaint.Graphics.StreamingSimplifier;
+import io.github.pastthepixels.freepaint.History.ModifyPathsCommand;
+import io.github.pastthepixels.freepaint.History.PersistentVector;
 
 /**
  * Erases a filled path region from paths, turning them into filled paths if necessary.
@@ -16,7 +28,7 @@ import io.github.pastthepixels.freepaint.Graphics.DrawPath;
  */
 public class EraserTool implements Tool {
     /**
-     * List of paths to redraw, where we highlight points.
+     * List of paths to draw (just the eraser path -- paths that can be erased are highlighted by the DrawCanvas, see <code>highlightsPaths</code>).
      */
     private final LinkedList<DrawPath> toolPaths = new LinkedList<>();
 
@@ -30,6 +42,16 @@ public class EraserTool implements Tool {
      */
     private final DrawCanvas canvas;
 
+    /**
+     * The part of the canvas that changed from the last touch event
+     */
+    private final RectF dirtyBounds = new RectF();
+
+    /**
+     * Drops touch samples that don't change the shape of the eraser path as they come in
+     */
+    private final StreamingSimplifier simplifier = new StreamingSimplifier();
+
     /**
      * Init function, binds the tool to a canvas and sets a default appearance for the eraser path
      *
@@ -42,7 +64,7 @@ public class EraserTool implements Tool {
 
     /**
      * Returns a list of paths entirely used by the tool for visual aid purposes so that it can be drawn by a DrawCanvas.
-     * In this case, this draws the red "eraser" path and draws every path that can be erased as green.
+     * In this case, this draws the red "eraser" path.
      *
      * @return A list of paths for the DrawCanvas to draw
      */
@@ -63,15 +85,34 @@ public class EraserTool implements Tool {
             case MotionEvent.ACTION_DOWN:
                 // Starts a new line in the path
                 currentPath.clear();
+                simplifier.reset(canvas.getResources().getDisplayMetrics().density, canvas.getScaleFactor());
                 break;
 
             case MotionEvent.ACTION_MOVE:
-                // Draws line between last point and this point
-                currentPath.addPoint(canvas.mapPoint(event.getX(), event.getY()));
+                // Draws line between last point and this point. Since the eraser is filled, only the triangle
+                // between that line and the first point changes on the screen.
+                Point point = simplifier.add(canvas.mapPoint(event.getX(), event.getY()));
+                if (point == null) {
+                    break;
+                }
+                dirtyBounds.set(point.x, point.y, point.x, point.y);
+                PointBuffer points = currentPath.points;
+                if (!points.isEmpty()) {
+                    dirtyBounds.union(points.getX(0), points.getY(0));
+                    dirtyBounds.union(points.getX(points.size() - 1), points.getY(points.size() - 1));
+                }
+                canvas.invalidateCanvasRegion(dirtyBounds);
+                currentPath.addLivePoint(point);
                 break;
 
             case MotionEvent.ACTION_UP:
+                // Adds the last point if the simplifier was holding on to it
+                Point last = simplifier.finish();
+                if (last != null) {
+                    currentPath.addLivePoint(last);
+                }
                 currentPath.finalise();
+                currentPath.cachePath();
                 eraseCurrentPath();
                 break;
 
@@ -82,42 +123,120 @@ public class EraserTool implements Tool {
     }
 
     /**
-     * Loops through all paths, calling <code>path.erase</code>.
+     * Loops through all paths, calling <code>path.erased</code>.
      * See <code>DrawPath.erase</code> for how this handles erasing from strokes/filled shapes.
+     * Paths in the document aren't changed in place: erasing makes a copy (only of paths that actually change) and
+     * we swap it in, so the old version is kept for undo.
+     * <p>
+     * Only paths whose bounds touch the eraser's are looked at, and those are erased in parallel on
+     * the common ForkJoinPool. The UI thread waits for every one of them, then puts the changed paths into
+     * <code>canvas.paths</code> all at once.
      */
     public void eraseCurrentPath() {
-        for (DrawPath path : canvas.paths) {
-            path.erase(currentPath);
-            path.cachePath();
+        long start = Metrics.start();
+        long traceStart = Tracer.begin(Tracer.ERASE);
+        PersistentVector<DrawPath> before = canvas.paths;
+        // Only paths near the eraser can be changed, so there's no need to look at (or copy) any others
+        SpatialIndex index = canvas.getSpatialIndex();
+        int count = index.query(currentPath.getBounds());
+        int[] candidates = new int[count];
+        for (int i = 0; i < count; i++) {
+            candidates[i] = index.getResult(i);
+        }
+        // The eraser is only read from other threads, so everything it caches lazily is made here first
+        currentPath.getFlattenedPath();
+        DrawPath[] erased = new DrawPath[count];
+        EraseTask task = new EraseTask(before, candidates, erased, currentPath, 0, count);
+        if (count > 1) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            task.compute();
+        }
+        // Puts the results in the document in one go
+        PersistentVector<DrawPath> after = before;
+        ArrayList<Integer> changed = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (erased[i] != null) {
+                after = after.set(candidates[i], erased[i]);
+                changed.add(candidates[i]);
+            }
+        }
+        if (!changed.isEmpty()) {
+            canvas.paths = after;
+            canvas.history.push(new ModifyPathsCommand(before, canvas.paths, changed));
         }
         currentPath.clear();
         init();
+        Tracer.end(Tracer.ERASE, traceStart);
+        Metrics.stop(Metrics.ERASE, start);
     }
 
     /**
-     * Initialises by building a list of DrawPaths which have their points highlighted
-     * and saves this to toolPaths.
+     * Initialises the list of tool paths. This doesn't depend on the document, so it's cheap to run after every erase/undo.
      */
     public void init() {
         toolPaths.clear();
-        for (DrawPath path : canvas.paths) {
-            DrawPath cloned = new DrawPath(path.getPath());
-            cloned.points = path.points;
-            cloned.isClosed = path.isClosed;
-            if (cloned.isClosed) {
-                cloned.appearance = new DrawAppearance(-1, Color.GREEN);
-            } else {
-                cloned.appearance = new DrawAppearance(Color.GREEN, -1);
-                cloned.appearance.strokeSize = 1;
-                cloned.appearance.useDP = true;
-                cloned.drawPoints = true;
+        toolPaths.add(currentPath);
+    }
+
+    /**
+     * Erases from a range of paths, splitting the range in half until each piece is small enough to do on one thread.
+     */
+    private static class EraseTask extends RecursiveAction {
+        /**
+         * Paths are erased one at a time below this, since each one (a boolean operation or cutting a stroke, and a copy
+         * if anything was erased) is a lot of work
+         */
+        private static final int THRESHOLD = 2;
+
+        private final PersistentVector<DrawPath> paths;
+        private final int[] candidates;
+        private final DrawPath[] results;
+        private final DrawPath eraser;
+        private final int from;
+        private final int to;
+
+        /**
+         * @param paths      The document
+         * @param candidates Indices of paths in the document to erase from
+         * @param results    Where to put each erased copy (or null if a path didn't change), by index in <code>candidates</code>
+         * @param eraser     The eraser path
+         * @param from       First index in <code>candidates</code> to erase from
+         * @param to         One past the last index in <code>candidates</code>
+         */
+        EraseTask(PersistentVector<DrawPath> paths, int[] candidates, DrawPath[] results, DrawPath eraser, int from, int to) {
+            this.paths = paths;
+            this.candidates = candidates;
+            this.results = results;
+            this.eraser = eraser;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    // Only paths that were actually erased from get copied
+                    results[i] = paths.get(candidates[i]).erased(eraser);
+                }
+                return;
             }
-            toolPaths.add(cloned);
+            int middle = (from + to) >>> 1;
+            invokeAll(
+                    new EraseTask(paths, candidates, results, eraser, from, middle),
+                    new EraseTask(paths, candidates, results, eraser, middle, to)
+            );
         }
-        toolPaths.add(currentPath);
     }
 
-    public boolean allowVersionBackup() {
+    /**
+     * Every path that can be erased is highlighted in green.
+     *
+     * @return True
+     */
+    @Override
+    public boolean highlightsPaths() {
         return true;
     }
 
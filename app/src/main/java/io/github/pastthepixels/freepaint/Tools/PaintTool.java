@@ -1,6 +1,7 @@
 package io.github.pastthepixels.freepaint.Tools;
 
 import android.graphics.Color;
+import android.graphics.RectF;
 import android.view.MotionEvent;
 
 import androidx.preference.PreferenceManager;
@@ -10,6 +11,11 @@ import java.util.LinkedList;
 import io.github.pastthepixels.freepaint.Graphics.DrawAppearance;
 import io.github.pastthepixels.freepaint.Graphics.DrawCanvas;
 import io.github.pastthepixels.freepaint.Graphics.DrawPath;
+import io.github.pastthepixels.freepaint.Graphics.Point;
+import io.github.pastthepixels.freepaint.Graphics.PointBuffer;
+import io.github.pastthepixels.freepaint.Graphics.StreamingSimplifier;
+import io.github.pastthepixels.freepaint.History.AddPathCommand;
+import io.github.pastthepixels.freepaint.History.PersistentVector;
 
 public class PaintTool implements Tool {
     /**
@@ -19,6 +25,22 @@ public class PaintTool implements Tool {
     private final DrawCanvas canvas;
     private DrawPath currentPath;
 
+    /**
+     * Holds the path being drawn. It's only added to the document once you lift your finger,
+     * so that the document (and its tile cache) doesn't change on every move.
+     */
+    private final LinkedList<DrawPath> toolPaths = new LinkedList<>();
+
+    /**
+     * The part of the canvas that changed from the last touch event
+     */
+    private final RectF dirtyBounds = new RectF();
+
+    /**
+     * Drops touch samples that don't change the shape of the stroke as they come in
+     */
+    private final StreamingSimplifier simplifier = new StreamingSimplifier();
+
     /**
      * Constructor for PaintTool, which binds itself to a DrawCanvas
      *
@@ -29,30 +51,31 @@ public class PaintTool implements Tool {
     }
 
     /**
-     * Returns nothing as we don't draw custom tool paths
+     * Returns the path being drawn, if there is one
      */
     @Override
     public LinkedList<DrawPath> getToolPaths() {
-        return null;
+        return toolPaths;
     }
 
     /**
      * Nothing to do when we select the paint tool (required because of <code>Tool</code>)
      */
     public void init() {
-
+        toolPaths.clear();
     }
 
     /**
      * When the user puts a finger on the screen, we create a new DrawPath.
      * Then, as they move it, we add each point Android is able to poll to the path.
      * (This also means that path resolution == Android's native touch polling speed)
-     * Once the user lifts their finger off the screen, we finalise that path's points.
+     * Once the user lifts their finger off the screen, we finalise that path's points and add it to the document.
      *
      * @param event MotionEvent passed from a DrawCanvas
      * @return Boolean return value passed to a DrawCanvas
      */
     public boolean onTouchEvent(MotionEvent event) {
+        canvas.getLatencyTracker().onInput(event);
         // Checks for the event that occurs
         switch (event.getAction()) {
             case MotionEvent.ACTION_DOWN:
@@ -60,19 +83,39 @@ public class PaintTool implements Tool {
                 // Starts a new line in the path -- whether or not it is closed is taken from the preferences (defaults to false)
                 currentPath = new DrawPath(null);
                 currentPath.simplificationAmount = Double.parseDouble(PreferenceManager.getDefaultSharedPreferences(canvas.getContext()).getString("simplificationAmount", "0"));
+                currentPath.fitCurves = PreferenceManager.getDefaultSharedPreferences(canvas.getContext()).getBoolean("fitCurves", false);
                 currentPath.isClosed = PreferenceManager.getDefaultSharedPreferences(canvas.getContext()).getBoolean("drawFilledShapes", false);
                 currentPath.appearance = appearance.clone();
-                canvas.paths.add(currentPath);
+                simplifier.reset(canvas.getResources().getDisplayMetrics().density, canvas.getScaleFactor());
+                toolPaths.clear();
+                toolPaths.add(currentPath);
                 break;
 
             case MotionEvent.ACTION_MOVE:
-                // Draws line between last point and this point
-                currentPath.addPoint(canvas.mapPoint(event.getX(), event.getY()));
+                // Draws line between last point and this point (only adding that line to the path we draw)
+                Point point = simplifier.add(canvas.mapPoint(event.getX(), event.getY()));
+                if (point != null) {
+                    invalidateSegment(point);
+                    currentPath.addLivePoint(point);
+                }
                 break;
 
             case MotionEvent.ACTION_UP:
+                // Adds the last point if the simplifier was holding on to it
+                Point last = simplifier.finish();
+                if (last != null) {
+                    currentPath.addLivePoint(last);
+                }
+                // The finished path can be a bit different from the live one, so both have to be redrawn
+                dirtyBounds.set(currentPath.getBounds());
                 currentPath.finalise();
                 currentPath.cachePath();
+                dirtyBounds.union(currentPath.getBounds());
+                canvas.invalidateCanvasRegion(dirtyBounds);
+                PersistentVector<DrawPath> pathsBefore = canvas.paths;
+                canvas.paths = canvas.paths.append(currentPath);
+                canvas.history.push(new AddPathCommand(pathsBefore, canvas.paths));
+                toolPaths.clear();
                 break;
 
             default:
@@ -81,7 +124,22 @@ public class PaintTool implements Tool {
         return true;
     }
 
-    public boolean allowVersionBackup() {
-        return true;
+    /**
+     * Tells the canvas which part of it changes when a point is added to the current path: the line from the last
+     * point to the new one, or for filled paths the triangle between that line and the first point.
+     *
+     * @param point The point that's about to be added
+     */
+    private void invalidateSegment(Point point) {
+        dirtyBounds.set(point.x, point.y, point.x, point.y);
+        PointBuffer points = currentPath.points;
+        if (!points.isEmpty()) {
+            dirtyBounds.union(points.getX(points.size() - 1), points.getY(points.size() - 1));
+            if (currentPath.isClosed || currentPath.appearance.fill != -1) {
+                dirtyBounds.union(points.getX(0), points.getY(0));
+            }
+        }
+        dirtyBounds.inset(-currentPath.appearance.strokeSize / 2f, -currentPath.appearance.strokeSize / 2f);
+        canvas.invalidateCanvasRegion(dirtyBounds);
     }
 }
@@ -141,8 +141,4 @@ public class PanTool implements Tool {
     public void init() {
 
     }
-
-    public boolean allowVersionBackup() {
-        return false;
-    }
 }
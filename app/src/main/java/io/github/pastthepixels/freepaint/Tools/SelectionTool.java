@@ -1,16 +1,25 @@
 package io.github.pastthepixels.freepaint.Tools;
 
 import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Path;
 import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.Region;
 import android.view.MotionEvent;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 
+import io.github.pastthepixels.freepaint.Debug.Tracer;
+import io.github.pastthepixels.freepaint.Graphics.DragLayer;
 import io.github.pastthepixels.freepaint.Graphics.DrawAppearance;
 import io.github.pastthepixels.freepaint.Graphics.DrawCanvas;
 import io.github.pastthepixels.freepaint.Graphics.DrawPath;
 import io.github.pastthepixels.freepaint.Graphics.Point;
+import io.github.pastthepixels.freepaint.Graphics.SpatialIndex;
+import io.github.pastthepixels.freepaint.History.PersistentVector;
+import io.github.pastthepixels.freepaint.History.TranslatePathsCommand;
 
 public class SelectionTool implements Tool {
     private final DrawAppearance APPEARANCE = new DrawAppearance(Color.GRAY, Color.argb(32, 64, 64, 64));
@@ -18,12 +27,36 @@ public class SelectionTool implements Tool {
     private final DrawAppearance APPEARANCE_SELECTED = new DrawAppearance(Color.BLUE, -1);
 
     private final LinkedList<DrawPath> toolPaths = new LinkedList<>();
-    private final LinkedList<DrawPath> selectedPaths = new LinkedList<>();
+    private final ArrayList<DrawPath> selectedPaths = new ArrayList<>();
+    /**
+     * Index of each selected path in <code>DrawCanvas.paths</code>
+     */
+    private final ArrayList<Integer> selectedIndices = new ArrayList<>();
 
     private final DrawPath currentPath = new DrawPath(null);
+    /**
+     * The part of the canvas that changed from the last touch event
+     */
+    private final RectF dirtyBounds = new RectF();
     private final DrawCanvas canvas;
     public Point originalPoint = new Point(0, 0);
     public Point previousPoint = null;
+    /**
+     * <code>DrawCanvas.paths</code> from before the selection was moved
+     */
+    private PersistentVector<DrawPath> pathsBefore;
+    /**
+     * <code>DrawCanvas.paths</code> with the selected paths hidden (see <code>hideSelectedPaths</code>)
+     */
+    private PersistentVector<DrawPath> pathsHidden;
+    /**
+     * The selected paths while they're being dragged (see <code>DragLayer</code>), or null
+     */
+    private DragLayer dragLayer;
+    /**
+     * Where the current drag started
+     */
+    private Point dragStart;
     boolean changedDrawPaths = false;
     private TOUCH_MODES mode;
 
@@ -52,6 +85,11 @@ public class SelectionTool implements Tool {
         return toolPaths;
     }
 
+    @Override
+    public DragLayer getDragLayer() {
+        return dragLayer;
+    }
+
     /**
      * Every time we select the selection tool (heh), it clears the previous selection.
      * One of the reasons for doing this is that if we selected a path and its shape changed/it's no longer there,
@@ -59,9 +97,12 @@ public class SelectionTool implements Tool {
      */
     public void init() {
         selectedPaths.clear();
+        selectedIndices.clear();
         currentPath.clear();
         toolPaths.clear();
         toolPaths.add(currentPath);
+        cancelDrag();
+        mode = TOUCH_MODES.none;
     }
 
     /**
@@ -70,7 +111,8 @@ public class SelectionTool implements Tool {
      * (1a) When the user lifts their finger, resize the selection square to fit the selection,
      * effectively repurposing the square from showing the region to select to showing the
      * bounds of the selected paths.
-     * (2) If the touch point is in in the selected square, move the selection.
+     * (2) If the touch point is in in the selected square, move the selection. While it's being moved, the selected
+     * paths are drawn as one bitmap (see <code>DragLayer</code>) and they're only actually moved when you let go.
      * (3) TODO: If the touch point is on the edges of the square (draw circle "handles" that can be used to determine this), scale the selection.
      *
      * @param event MotionEvent passed from the DrawCanvas
@@ -88,6 +130,7 @@ public class SelectionTool implements Tool {
                     currentPath.appearance = APPEARANCE.clone();
                     mode = TOUCH_MODES.define;
                     selectedPaths.clear();
+                    selectedIndices.clear();
                     currentPath.clear();
                 } else {
                     mode = TOUCH_MODES.move;
@@ -97,6 +140,11 @@ public class SelectionTool implements Tool {
 
             case MotionEvent.ACTION_MOVE:
                 Point touchPoint = canvas.mapPoint(event.getX(), event.getY());
+                // Redraws where the selection (and anything in it) was, and where it is now
+                dirtyBounds.setEmpty();
+                if (!currentPath.points.isEmpty()) {
+                    dirtyBounds.set(currentPath.getBounds());
+                }
                 if (mode == TOUCH_MODES.define) {
                     // If we're trying to define a new selection, redraw the current path with the bounds
                     currentPath.clear();
@@ -106,13 +154,24 @@ public class SelectionTool implements Tool {
                     currentPath.addPoint(new Point(originalPoint.x, touchPoint.y));
                 }
                 if (mode == TOUCH_MODES.move && previousPoint != null) {
-                    // If we're trying to move all the paths we selected... well, move them!
-                    changedDrawPaths = true;
-                    currentPath.translate(touchPoint.clone().applySubtract(previousPoint));
-                    for (DrawPath path : selectedPaths) {
-                        path.translate(touchPoint.clone().applySubtract(previousPoint));
-                        path.cachePath();
+                    // If we're trying to move all the paths we selected... well, drag them! (They're moved for real on ACTION_UP.)
+                    if (!changedDrawPaths) {
+                        pathsBefore = canvas.paths;
+                        changedDrawPaths = true;
+                        dragStart = previousPoint.clone();
+                        dragLayer = DragLayer.capture(selectedPaths, canvas.getScaleFactor(),
+                                canvas.getResources().getDisplayMetrics().density);
+                        hideSelectedPaths();
                     }
+                    Point translation = touchPoint.clone().applySubtract(previousPoint);
+                    currentPath.translate(translation);
+                    addDragLayerBounds();
+                    dragLayer = dragLayer.moved(touchPoint.x - dragStart.x, touchPoint.y - dragStart.y);
+                    addDragLayerBounds();
+                }
+                if (!currentPath.points.isEmpty()) {
+                    dirtyBounds.union(currentPath.getBounds());
+                    canvas.invalidateCanvasRegion(dirtyBounds);
                 }
                 // Important for second if statement
                 previousPoint = touchPoint.clone();
@@ -125,10 +184,28 @@ public class SelectionTool implements Tool {
                     selectPaths();
                     currentPath.appearance = APPEARANCE_SELECTED;
                 }
+                if (mode == TOUCH_MODES.move && changedDrawPaths) {
+                    // Moves the paths once, then saves the whole move as one step in the history
+                    moveSelectedPaths(previousPoint.clone().applySubtract(dragStart));
+                    dragLayer.release();
+                    dragLayer = null;
+                    canvas.history.push(new TranslatePathsCommand(pathsBefore, canvas.paths, selectedIndices));
+                }
+                mode = TOUCH_MODES.none;
+                break;
+
+            case MotionEvent.ACTION_CANCEL:
+                // The touch was taken away from us (ex. by a system gesture), so put everything back where it was
+                if (dragLayer != null) {
+                    dirtyBounds.set(currentPath.getBounds());
+                    addDragLayerBounds();
+                    currentPath.translate(dragStart.clone().applySubtract(previousPoint));
+                    dirtyBounds.union(currentPath.getBounds());
+                    canvas.invalidateCanvasRegion(dirtyBounds);
+                }
+                cancelDrag();
                 mode = TOUCH_MODES.none;
-                break; // Usually we would say we consumed the input and we shouldn't do a redraw
-            // but this is also when we lift our finger a.k.a when we make backups of
-            // DrawCanvas.drawPaths.
+                break;
 
             default:
                 return false;
@@ -141,6 +218,7 @@ public class SelectionTool implements Tool {
      * so it now represents the bounds of the selection.
      */
     public void selectPaths() {
+        long start = Tracer.begin(Tracer.SELECT_PATHS);
         Point startPoint = canvas.mapPoint(0, 0);
         Point endPoint = canvas.mapPoint(canvas.getWidth(), canvas.getHeight());
         Region clip = new Region(Math.round(startPoint.x), Math.round(startPoint.y), Math.round(endPoint.x), Math.round(endPoint.y));
@@ -155,12 +233,18 @@ public class SelectionTool implements Tool {
         currentPathRegion.setPath(currentPath.generatePath(), clip);
 
         // Bounding box math! (If a path collides with the current path, add it to the selection.)
-        for (DrawPath path : canvas.paths) {
+        // Only paths whose bounds touch the selection's bounds can collide with it.
+        SpatialIndex spatialIndex = canvas.getSpatialIndex();
+        int count = spatialIndex.query(currentPath.getBounds());
+        for (int i = 0; i < count; i++) {
+            int index = spatialIndex.getResult(i);
+            DrawPath path = canvas.paths.get(index);
             Region region = new Region();
-            region.setPath(path.getPath(), clip);
+            region.setPath(path.getTransformedPath(), clip);
             Rect bounds = region.getBounds();
             if (!region.quickReject(currentPathRegion) && region.op(currentPathRegion, Region.Op.INTERSECT)) {
                 selectedPaths.add(path);
+                selectedIndices.add(index);
                 // Checks to see if the bounding box for all selections can be expanded.
                 // Speaking of expanding things, you should click the minimise button the left for each if statement.
                 if (boundsTop == null) {
@@ -193,10 +277,61 @@ public class SelectionTool implements Tool {
             currentPath.addPoint(boundsBottom);
             currentPath.addPoint(new Point(boundsTop.x, boundsBottom.y));
         }
+        Tracer.end(Tracer.SELECT_PATHS, start);
     }
 
-    public boolean allowVersionBackup() {
-        return changedDrawPaths;
+    /**
+     * Swaps every selected path in the document for an empty path while it's being dragged, so that it's only drawn
+     * by the DragLayer. The real paths are put back (moved) by <code>moveSelectedPaths</code>.
+     */
+    private void hideSelectedPaths() {
+        for (int i = 0; i < selectedPaths.size(); i++) {
+            canvas.paths = canvas.paths.set(selectedIndices.get(i), new DrawPath(new Path()));
+        }
+        pathsHidden = canvas.paths;
+    }
+
+    /**
+     * Stops dragging without moving anything, putting back the paths <code>hideSelectedPaths</code> took out of the
+     * document. If the document changed since then (ex. undo), the placeholders are already gone and it's left alone.
+     */
+    private void cancelDrag() {
+        if (dragLayer != null) {
+            if (canvas.paths == pathsHidden) {
+                canvas.paths = pathsBefore;
+            }
+            dragLayer.release();
+        }
+        dragLayer = null;
+        pathsHidden = null;
+        changedDrawPaths = false;
+    }
+
+    /**
+     * Adds where the DragLayer is now to the part of the canvas that has to be redrawn.
+     */
+    private void addDragLayerBounds() {
+        RectF bounds = new RectF();
+        dragLayer.getBounds(bounds);
+        dirtyBounds.union(bounds);
+    }
+
+    /**
+     * Replaces every selected path in the document with a moved copy. Paths are never moved in place, so that
+     * the versions of the document saved in the history (and the tile cache, which looks for new paths) stay correct.
+     * Moving only changes each path's transform (see <code>DrawPath.transformed</code>), so it doesn't matter how many
+     * points the paths have.
+     *
+     * @param translation How much to move the paths by
+     */
+    private void moveSelectedPaths(Point translation) {
+        Matrix matrix = new Matrix();
+        matrix.setTranslate(translation.x, translation.y);
+        for (int i = 0; i < selectedPaths.size(); i++) {
+            DrawPath moved = selectedPaths.get(i).transformed(matrix);
+            selectedPaths.set(i, moved);
+            canvas.paths = canvas.paths.set(selectedIndices.get(i), moved);
+        }
     }
 
     /**
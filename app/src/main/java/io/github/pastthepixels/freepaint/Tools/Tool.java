@@ -4,6 +4,7 @@ import android.view.MotionEvent;
 
 import java.util.LinkedList;
 
+import io.github.pastthepixels.freepaint.Graphics.DragLayer;
 import io.github.pastthepixels.freepaint.Graphics.DrawPath;
 
 public interface Tool {
@@ -24,12 +25,28 @@ public interface Tool {
     boolean onTouchEvent(MotionEvent event);
 
     /**
-     * Whether to make a backup of DrawCanvas.paths when your finger is lifted from the screen with this tool.
+     * Every time this tool is selected, run this.
      */
-    boolean allowVersionBackup();
+    void init();
 
     /**
-     * Every time this tool is selected, run this.
+     * Whether the DrawCanvas should dim the document and highlight every path in it (ex. to show what the eraser
+     * can erase) before drawing tool paths. The canvas draws these itself (see <code>PathHighlighter</code>),
+     * so tools don't have to put a copy of every path in <code>getToolPaths</code>.
+     *
+     * @return True to highlight paths
      */
-    void init();
+    default boolean highlightsPaths() {
+        return false;
+    }
+
+    /**
+     * Paths the tool is dragging around, which the DrawCanvas draws after the document and before tool paths
+     * (see <code>DragLayer</code>).
+     *
+     * @return The DragLayer, or null if nothing's being dragged
+     */
+    default DragLayer getDragLayer() {
+        return null;
+    }
 }
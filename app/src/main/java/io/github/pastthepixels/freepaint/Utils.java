@@ -3,12 +3,6 @@ package io.github.pastthepixels.freepaint;
 import io.github.pastthepixels.freepaint.Graphics.Point;
 
 public class Utils {
-    public static double distanceFromPointToLine(Point lineStart, Point lineEnd, Point test) {
-        double numerator = Math.abs((lineEnd.x - lineStart.x) * (test.y - lineStart.y) - (test.x - lineStart.x) * (lineEnd.y - lineStart.y));
-        double denominator = Math.sqrt(Math.pow(lineEnd.x - lineStart.x, 2) + Math.pow(lineEnd.y - lineStart.y, 2));
-        return numerator / denominator;
-    }
-
     /**
      * Gets the point of collision between two lines, each defined by two points on the line.
      * Precondition: both lines must intersect.
@@ -30,6 +24,29 @@ public class Utils {
         );
     }
 
+    /**
+     * Like <code>collisionBetweenLines</code>, but for line segments (which don't have to intersect), and without
+     * making any Points.
+     * @return How far along the segment from a to b (from 0 to 1) it crosses the segment from c to d,
+     * or NaN if they don't cross (or are parallel)
+     */
+    public static float segmentIntersection(float ax, float ay, float bx, float by, float cx, float cy, float dx, float dy) {
+        float rx = bx - ax;
+        float ry = by - ay;
+        float sx = dx - cx;
+        float sy = dy - cy;
+        float denom = rx * sy - ry * sx;
+        if (denom == 0) {
+            return Float.NaN;
+        }
+        float t = ((cx - ax) * sy - (cy - ay) * sx) / denom;
+        float u = ((cx - ax) * ry - (cy - ay) * rx) / denom;
+        if (t < 0 || t > 1 || u < 0 || u > 1) {
+            return Float.NaN;
+        }
+        return t;
+    }
+
     /**
      * Returns the angle between two vectors in radians.
      * @param vecA
@@ -37,6 +54,14 @@ public class Utils {
      * @return The angle between two vectors, radians
      */
     public static double angleBetweenVectors(Point vecA, Point vecB) {
-        return Math.acos((vecA.x * vecB.x + vecA.y * vecB.y) / (vecA.length() * vecB.length()));
+        return angleBetweenVectors(vecA.x, vecA.y, vecB.x, vecB.y);
+    }
+
+    /**
+     * Returns the angle between two vectors in radians, without needing Points for them.
+     * @return The angle between (ax, ay) and (bx, by), radians
+     */
+    public static double angleBetweenVectors(float ax, float ay, float bx, float by) {
+        return Math.acos((ax * bx + ay * by) / (Math.hypot(ax, ay) * Math.hypot(bx, by)));
     }
 }
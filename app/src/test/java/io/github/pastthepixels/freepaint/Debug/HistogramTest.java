@@ -0,0 +1,43 @@
+package io.github.pastthepixels.freepaint.Debug;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HistogramTest {
+    @Test
+    public void getValueAtPercentile_isExactForSmallValues() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(95, histogram.getValueAtPercentile(95));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+        assertEquals(100, histogram.getTotalCount());
+    }
+
+    @Test
+    public void getValueAtPercentile_isWithinPrecisionForLargeValues() {
+        Histogram histogram = new Histogram();
+        for (long i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000);
+        }
+        long[][] expected = {{50, 5_000_000}, {95, 9_500_000}, {99, 9_900_000}};
+        for (long[] pair : expected) {
+            long value = histogram.getValueAtPercentile(pair[0]);
+            assertTrue(pair[0] + "th percentile was " + value, Math.abs(value - pair[1]) <= pair[1] * 0.016);
+        }
+        assertEquals(10_000_000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void record_clampsHugeValues() {
+        Histogram histogram = new Histogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-5);
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.pastthepixels.freepaint.Debug;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsTest {
+    @Before
+    public void setUp() {
+        Metrics.reset();
+        Metrics.enabled = true;
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.enabled = false;
+        Metrics.reset();
+    }
+
+    @Test
+    public void getPercentile_usesOnlyTheLastWindowOfSamples() {
+        // These are pushed out of the window by the next ones
+        for (int i = 0; i < Metrics.WINDOW; i++) {
+            Metrics.record(Metrics.DRAW, 1_000_000_000);
+        }
+        for (int i = 1; i <= Metrics.WINDOW; i++) {
+            Metrics.record(Metrics.DRAW, i);
+        }
+        assertEquals(Metrics.WINDOW, Metrics.getSampleCount(Metrics.DRAW));
+        assertEquals(Metrics.WINDOW / 2, Metrics.getPercentile(Metrics.DRAW, 50));
+        assertEquals(Metrics.WINDOW, Metrics.getPercentile(Metrics.DRAW, 100));
+        assertEquals(1, Metrics.getPercentile(Metrics.DRAW, 0));
+    }
+
+    @Test
+    public void endFrame_keepsCountersFromTheLastFrame() {
+        Metrics.count(Metrics.PATHS_DRAWN, 3);
+        Metrics.count(Metrics.PATHS_DRAWN, 4);
+        Metrics.endFrame();
+        Metrics.count(Metrics.PATHS_DRAWN, 1);
+        assertEquals(7, Metrics.getCounter(Metrics.PATHS_DRAWN));
+        Metrics.endFrame();
+        assertEquals(1, Metrics.getCounter(Metrics.PATHS_DRAWN));
+    }
+
+    @Test
+    public void record_doesNothingWhenDisabled() {
+        Metrics.enabled = false;
+        Metrics.record(Metrics.ERASE, 5);
+        assertEquals(0, Metrics.getSampleCount(Metrics.ERASE));
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.pastthepixels.freepaint.Debug;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+public class TracerTest {
+    @Before
+    public void setUp() {
+        Tracer.clear();
+    }
+
+    @Test
+    public void writeJson_writesCompleteEventsInMicroseconds() throws IOException {
+        Tracer.record(Tracer.FINALISE, 2_000_500, 1_250, 7);
+        StringWriter writer = new StringWriter();
+        Tracer.writeJson(writer, 42);
+        String json = writer.toString();
+        assertTrue(json, json.contains("{\"name\":\"DrawPath.finalise\",\"cat\":\"freepaint\",\"ph\":\"X\",\"ts\":2000.500,\"dur\":1.250,\"pid\":42,\"tid\":7}"));
+        assertTrue(json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+        assertTrue(json.trim().endsWith("]}"));
+    }
+
+    @Test
+    public void record_overwritesTheOldestEvents() throws IOException {
+        Tracer.record(Tracer.ERASE, 0, 0, 1);
+        for (int i = 0; i < Tracer.CAPACITY; i++) {
+            Tracer.record(Tracer.DRAW, i * 1000L, 0, 1);
+        }
+        StringWriter writer = new StringWriter();
+        Tracer.writeJson(writer, 1);
+        String json = writer.toString();
+        assertFalse(json.contains("EraserTool"));
+        assertEquals(Tracer.CAPACITY, json.split("DrawCanvas.onDraw", -1).length - 1);
+        // Oldest first
+        assertTrue(json.indexOf("\"ts\":0.000,") < json.indexOf("\"ts\":1.000,"));
+    }
+}
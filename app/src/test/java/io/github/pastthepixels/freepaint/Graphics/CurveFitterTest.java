@@ -0,0 +1,102 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CurveFitterTest {
+    private static final double TOLERANCE = 1;
+
+    private static PointBuffer sine(int count) {
+        PointBuffer points = new PointBuffer();
+        for (int i = 0; i < count; i++) {
+            points.add(i * 2, (float) (Math.sin(i * 0.05) * 100), i == 0 ? Point.COMMANDS.move : Point.COMMANDS.none, 0);
+        }
+        return points;
+    }
+
+    /**
+     * Distance from a point to the closest spot on the fitted curves (by sampling each curve)
+     */
+    private static double distanceToCurves(PointBuffer curves, float px, float py) {
+        double closest = Double.MAX_VALUE;
+        for (int i = 1; i < curves.size(); i++) {
+            if (curves.getCommand(i) == Point.COMMANDS.move) {
+                continue;
+            }
+            for (int step = 0; step <= 500; step++) {
+                double t = step / 500.0;
+                double mt = 1 - t;
+                double x = mt * mt * mt * curves.getX(i - 1) + 3 * mt * mt * t * curves.getRightHandleX(i - 1)
+                        + 3 * mt * t * t * curves.getLeftHandleX(i) + t * t * t * curves.getX(i);
+                double y = mt * mt * mt * curves.getY(i - 1) + 3 * mt * mt * t * curves.getRightHandleY(i - 1)
+                        + 3 * mt * t * t * curves.getLeftHandleY(i) + t * t * t * curves.getY(i);
+                closest = Math.min(closest, Math.hypot(x - px, y - py));
+            }
+        }
+        return closest;
+    }
+
+    @Test
+    public void fit_usesFewCurvesWithinTolerance() {
+        PointBuffer points = sine(300);
+        PointBuffer curves = new PointBuffer();
+        new CurveFitter().fit(points, TOLERANCE, curves);
+        // Much fewer than the straight lines RDP would need for the same tolerance
+        Simplifier simplifier = new Simplifier();
+        float[] coordinates = simplifier.getBuffer(points.size());
+        for (int i = 0; i < points.size(); i++) {
+            coordinates[i * 2] = points.getX(i);
+            coordinates[i * 2 + 1] = points.getY(i);
+        }
+        int lines = simplifier.simplify(coordinates, points.size(), TOLERANCE) - 1;
+        assertTrue("Used " + (curves.size() - 1) + " curves instead of " + lines + " lines", (curves.size() - 1) * 2 < lines);
+        for (int i = 0; i < points.size(); i++) {
+            double distance = distanceToCurves(curves, points.getX(i), points.getY(i));
+            assertTrue("Point " + i + " is " + distance + " away", distance <= TOLERANCE + 0.05);
+        }
+        // The ends don't move
+        assertEquals(points.getX(0), curves.getX(0), 0);
+        assertEquals(points.getY(299), curves.getY(curves.size() - 1), 0);
+    }
+
+    @Test
+    public void fit_keepsCorners() {
+        PointBuffer points = new PointBuffer();
+        for (int i = 0; i <= 50; i++) {
+            points.add(i, 0, Point.COMMANDS.none, 0);
+        }
+        for (int i = 1; i <= 50; i++) {
+            points.add(50, i, Point.COMMANDS.none, 0);
+        }
+        PointBuffer curves = new PointBuffer();
+        new CurveFitter().fit(points, TOLERANCE, curves);
+        // One straight curve on each side of the corner, with the handles at the corner along each side
+        assertEquals(3, curves.size());
+        assertEquals(50, curves.getX(1), 0);
+        assertEquals(0, curves.getY(1), 0);
+        assertEquals(0, curves.getLeftHandleY(1), 0.001);
+        assertTrue(curves.getLeftHandleX(1) < 50);
+        assertEquals(50, curves.getRightHandleX(1), 0.001);
+        assertTrue(curves.getRightHandleY(1) > 0);
+    }
+
+    @Test
+    public void fit_keepsSubpathsAndSkipsRepeatedPoints() {
+        PointBuffer points = new PointBuffer();
+        points.add(0, 0, Point.COMMANDS.move, 0);
+        points.add(0, 0, Point.COMMANDS.none, 0);
+        points.add(10, 0, Point.COMMANDS.none, 0);
+        points.add(20, 20, Point.COMMANDS.move, 0);
+        points.add(30, 20, Point.COMMANDS.none, 0);
+        PointBuffer curves = new PointBuffer();
+        new CurveFitter().fit(points, TOLERANCE, curves);
+        assertEquals(4, curves.size());
+        assertEquals(Point.COMMANDS.move, curves.getCommand(2));
+        assertEquals(20, curves.getX(2), 0);
+        for (int i = 0; i < curves.size(); i++) {
+            assertTrue(!Float.isNaN(curves.getLeftHandleX(i)) && !Float.isNaN(curves.getRightHandleY(i)));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class FlattenedPathTest {
+    private static void addPolygon(PointBuffer points, float[] coordinates) {
+        for (int i = 0; i < coordinates.length; i += 2) {
+            points.add(coordinates[i], coordinates[i + 1], i == 0 ? Point.COMMANDS.move : Point.COMMANDS.line, 0);
+        }
+    }
+
+    /**
+     * Even-odd test straight from the polygon, to check against (the polygons below don't overlap themselves,
+     * so it gives the same answer as the winding rule)
+     */
+    private static boolean bruteForce(float[] polygon, float x, float y) {
+        boolean inside = false;
+        int count = polygon.length / 2;
+        for (int i = 0, j = count - 1; i < count; j = i++) {
+            float xi = polygon[i * 2], yi = polygon[i * 2 + 1];
+            float xj = polygon[j * 2], yj = polygon[j * 2 + 1];
+            if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * A star with wobbly spikes, which is very concave
+     */
+    private static float[] star(int spikes) {
+        Random random = new Random(7);
+        float[] polygon = new float[spikes * 4];
+        for (int i = 0; i < spikes * 2; i++) {
+            double angle = Math.PI * i / spikes;
+            double radius = i % 2 == 0 ? 400 + random.nextFloat() * 100 : 100 + random.nextFloat() * 50;
+            polygon[i * 2] = (float) (500 + Math.cos(angle) * radius);
+            polygon[i * 2 + 1] = (float) (500 + Math.sin(angle) * radius);
+        }
+        return polygon;
+    }
+
+    private static void assertMatchesBruteForce(float[] polygon) {
+        PointBuffer points = new PointBuffer();
+        addPolygon(points, polygon);
+        FlattenedPath flattened = new FlattenedPath(points);
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            float x = random.nextFloat() * 1100 - 50;
+            float y = random.nextFloat() * 1100 - 50;
+            assertEquals("(" + x + ", " + y + ")", bruteForce(polygon, x, y), flattened.contains(x, y));
+        }
+    }
+
+    @Test
+    public void contains_matchesBruteForceForSmallPolygons() {
+        assertMatchesBruteForce(star(5));
+    }
+
+    @Test
+    public void contains_matchesBruteForceWithBands() {
+        // Enough edges to be split into bands
+        assertMatchesBruteForce(star(500));
+    }
+
+    @Test
+    public void contains_usesWindingRuleForHoles() {
+        PointBuffer points = new PointBuffer();
+        // Outer square clockwise, inner square counterclockwise: a hole
+        addPolygon(points, new float[]{0, 0, 100, 0, 100, 100, 0, 100});
+        addPolygon(points, new float[]{25, 25, 25, 75, 75, 75, 75, 25});
+        FlattenedPath flattened = new FlattenedPath(points);
+        assertTrue(flattened.contains(10, 50));
+        assertFalse(flattened.contains(50, 50));
+        assertFalse(flattened.contains(150, 50));
+        // Same direction: no hole (that's how Android fills it)
+        points.clear();
+        addPolygon(points, new float[]{0, 0, 100, 0, 100, 100, 0, 100});
+        addPolygon(points, new float[]{25, 25, 75, 25, 75, 75, 25, 75});
+        assertTrue(new FlattenedPath(points).contains(50, 50));
+    }
+
+    @Test
+    public void contains_followsCurves() {
+        // A circle made of four curves, with handles that stick out past the points' bounding box
+        PointBuffer points = new PointBuffer();
+        float k = 0.5523f * 100;
+        points.add(100, 0, Point.COMMANDS.move, 0);
+        points.add(0, 100, Point.COMMANDS.none, 0);
+        points.add(-100, 0, Point.COMMANDS.none, 0);
+        points.add(0, -100, Point.COMMANDS.none, 0);
+        points.add(100, 0, Point.COMMANDS.none, 0);
+        points.setHandles(0, 0, 0, 0, k);
+        points.setHandles(1, k, 0, -k, 0);
+        points.setHandles(2, 0, k, 0, -k);
+        points.setHandles(3, -k, 0, k, 0);
+        points.setHandles(4, 0, -k, 0, 0);
+        FlattenedPath flattened = new FlattenedPath(points);
+        for (int i = 0; i < 64; i++) {
+            double angle = Math.PI * 2 * i / 64;
+            assertTrue(flattened.contains((float) (Math.cos(angle) * 98), (float) (Math.sin(angle) * 98)));
+            assertFalse(flattened.contains((float) (Math.cos(angle) * 102), (float) (Math.sin(angle) * 102)));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PathBooleanTest {
+    private static PointBuffer rectangle(float left, float top, float right, float bottom) {
+        PointBuffer points = new PointBuffer();
+        points.add(left, top, Point.COMMANDS.move, 0);
+        points.add(right, top, Point.COMMANDS.line, 0);
+        points.add(right, bottom, Point.COMMANDS.line, 0);
+        points.add(left, bottom, Point.COMMANDS.line, 0);
+        return points;
+    }
+
+    /**
+     * A circle made of four curves
+     */
+    private static PointBuffer circle(float x, float y, float radius) {
+        float handle = radius * 0.5523f;
+        PointBuffer points = new PointBuffer();
+        points.add(x + radius, y, Point.COMMANDS.move, 0);
+        points.setHandles(0, 0, -handle, 0, handle);
+        points.add(x, y + radius, Point.COMMANDS.line, 0);
+        points.setHandles(1, handle, 0, -handle, 0);
+        points.add(x - radius, y, Point.COMMANDS.line, 0);
+        points.setHandles(2, 0, handle, 0, -handle);
+        points.add(x, y - radius, Point.COMMANDS.line, 0);
+        points.setHandles(3, -handle, 0, handle, 0);
+        // Closes the circle with a last curve back to the start
+        points.add(x + radius, y, Point.COMMANDS.line, 0);
+        points.setHandles(4, 0, -handle, 0, handle);
+        return points;
+    }
+
+    /**
+     * Checks that a grid of points is inside the result exactly when it's in the subject and not the clip
+     * (skipping points that are too close to an outline to tell)
+     */
+    private static void assertDifference(FlattenedPath subject, FlattenedPath clip, FlattenedPath result,
+                                         float left, float top, float right, float bottom) {
+        for (float y = top; y <= bottom; y += 1.37f) {
+            for (float x = left; x <= right; x += 1.37f) {
+                boolean expected = subject.contains(x, y) && !clip.contains(x, y);
+                boolean near = false;
+                for (int i = 0; i < 8 && !near; i++) {
+                    double angle = i * Math.PI / 4;
+                    float nx = x + (float) Math.cos(angle);
+                    float ny = y + (float) Math.sin(angle);
+                    near = (subject.contains(nx, ny) && !clip.contains(nx, ny)) != expected;
+                }
+                if (!near) {
+                    assertEquals("at " + x + ", " + y, expected, result.contains(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void difference_disjointIsUnchanged() {
+        PointBuffer out = new PointBuffer();
+        assertFalse(PathBoolean.difference(new FlattenedPath(rectangle(0, 0, 10, 10)),
+                new FlattenedPath(rectangle(20, 20, 30, 30)), out));
+        assertEquals(0, out.size());
+        // Bounding boxes overlap, but the shapes don't
+        assertFalse(PathBoolean.difference(new FlattenedPath(circle(0, 0, 10)),
+                new FlattenedPath(rectangle(8, 8, 20, 20)), out));
+    }
+
+    @Test
+    public void difference_cutsHole() {
+        FlattenedPath subject = new FlattenedPath(rectangle(0, 0, 100, 100));
+        FlattenedPath clip = new FlattenedPath(rectangle(40, 40, 60, 60));
+        PointBuffer out = new PointBuffer();
+        assertTrue(PathBoolean.difference(subject, clip, out));
+        FlattenedPath result = new FlattenedPath(out);
+        assertFalse(result.contains(50, 50));
+        assertTrue(result.contains(20, 50));
+        assertDifference(subject, clip, result, -10, -10, 110, 110);
+    }
+
+    @Test
+    public void difference_overlapping() {
+        FlattenedPath subject = new FlattenedPath(rectangle(0, 0, 100, 100));
+        // Shares an edge with the subject, to check that lines on top of each other work
+        FlattenedPath clip = new FlattenedPath(rectangle(50, 0, 150, 30));
+        PointBuffer out = new PointBuffer();
+        assertTrue(PathBoolean.difference(subject, clip, out));
+        assertDifference(subject, clip, new FlattenedPath(out), -10, -10, 160, 110);
+
+        clip = new FlattenedPath(circle(100, 100, 40));
+        assertTrue(PathBoolean.difference(subject, clip, out));
+        assertDifference(subject, clip, new FlattenedPath(out), -10, -10, 150, 150);
+    }
+
+    @Test
+    public void difference_keepsCurves() {
+        FlattenedPath subject = new FlattenedPath(circle(0, 0, 100));
+        FlattenedPath clip = new FlattenedPath(rectangle(50, -20, 200, 20));
+        PointBuffer out = new PointBuffer();
+        assertTrue(PathBoolean.difference(subject, clip, out));
+        assertDifference(subject, clip, new FlattenedPath(out), -110, -110, 110, 110);
+        // The flattened circle has a lot of lines, but only a few curves are needed to fit it again
+        assertTrue(out.size() < 20);
+        assertTrue(out.size() < subject.getEdgeCount() / 4);
+    }
+}
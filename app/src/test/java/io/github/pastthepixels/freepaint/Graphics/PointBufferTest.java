@@ -0,0 +1,105 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PointBufferTest {
+    private static PointBuffer line(int count) {
+        PointBuffer buffer = new PointBuffer(1);
+        for (int i = 0; i < count; i++) {
+            buffer.add(i, i * 2, i == 0 ? Point.COMMANDS.move : Point.COMMANDS.line, i);
+        }
+        return buffer;
+    }
+
+    @Test
+    public void add_growsAndKeepsValues() {
+        PointBuffer buffer = line(100);
+        assertEquals(100, buffer.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, buffer.getX(i), 0);
+            assertEquals(i * 2, buffer.getY(i), 0);
+            assertEquals(i, buffer.getColor(i));
+        }
+        assertEquals(Point.COMMANDS.move, buffer.getCommand(0));
+        assertEquals(Point.COMMANDS.line, buffer.getCommand(99));
+    }
+
+    @Test
+    public void removeAt_shiftsEveryColumn() {
+        PointBuffer buffer = line(5);
+        buffer.setHandles(3, 1, 2, 3, 4);
+        buffer.removeAt(1);
+        assertEquals(4, buffer.size());
+        assertEquals(2, buffer.getX(1), 0);
+        assertEquals(3, buffer.getColor(2));
+        // Handles moved along with their point, and are relative to it
+        assertEquals(3 + 1, buffer.getLeftHandleX(2), 0);
+        assertEquals(6 + 4, buffer.getRightHandleY(2), 0);
+    }
+
+    @Test
+    public void translate_movesHandlesWithPoints() {
+        PointBuffer buffer = line(3);
+        buffer.setHandles(1, -1, -1, 1, 1);
+        buffer.translate(10, 20);
+        assertEquals(11, buffer.getX(1), 0);
+        assertEquals(22, buffer.getY(1), 0);
+        assertEquals(10, buffer.getLeftHandleX(1), 0);
+        assertEquals(23, buffer.getRightHandleY(1), 0);
+    }
+
+    @Test
+    public void transform_mapsPointsAndHandles() {
+        PointBuffer buffer = line(3);
+        buffer.setHandles(1, -1, 0, 1, 0);
+        // Rotates 90 degrees around the origin, then moves right
+        buffer.transform(0, -1, 100, 1, 0, 0);
+        assertEquals(98, buffer.getX(1), 0);
+        assertEquals(1, buffer.getY(1), 0);
+        assertEquals(98, buffer.getLeftHandleX(1), 0);
+        assertEquals(0, buffer.getLeftHandleY(1), 0);
+        assertEquals(2, buffer.getRightHandleY(1), 0);
+    }
+
+    @Test
+    public void retain_keepsOrderAndHandles() {
+        PointBuffer buffer = line(6);
+        buffer.setHandles(5, -1, -1, 1, 1);
+        // Up along y = x, then back down in a straight line, so only the ends and the corner are kept
+        Simplifier simplifier = new Simplifier();
+        simplifier.simplify(new float[]{0, 0, 1, 1, 2, 2, 3, 3, 4, 2, 5, 1}, 6, 0.1);
+        buffer.retain(simplifier);
+        assertEquals(3, buffer.size());
+        assertEquals(0, buffer.getX(0), 0);
+        assertEquals(3, buffer.getX(1), 0);
+        assertEquals(5, buffer.getX(2), 0);
+        assertEquals(6, buffer.getRightHandleX(2), 0);
+        assertEquals(5, buffer.getColor(2));
+    }
+
+    @Test
+    public void copy_isIndependent() {
+        PointBuffer buffer = line(10);
+        PointBuffer copy = buffer.copy();
+        copy.translate(5, 5);
+        copy.setCommand(3, Point.COMMANDS.move);
+        copy.removeAt(0);
+        assertEquals(10, buffer.size());
+        assertEquals(3, buffer.getX(3), 0);
+        assertEquals(Point.COMMANDS.line, buffer.getCommand(3));
+        // Copying an empty buffer still gives one that can grow
+        PointBuffer empty = new PointBuffer().copy();
+        empty.add(1, 1, Point.COMMANDS.move, 0);
+        assertEquals(1, empty.size());
+    }
+
+    @Test
+    public void estimateSize_isSmallerThanPointObjects() {
+        PointBuffer buffer = line(1000);
+        // A Point with both handles is about 120 bytes
+        assertTrue(buffer.estimateSize() < 1000 * 40);
+    }
+}
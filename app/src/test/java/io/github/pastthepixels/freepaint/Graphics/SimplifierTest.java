@@ -0,0 +1,67 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SimplifierTest {
+    @Test
+    public void simplify_keepsCornersAndDropsPointsOnStraightLines() {
+        // An L shape: (0, 0) -> (10, 0) -> (10, 10), with a point every 1 unit
+        float[] coordinates = new float[21 * 2];
+        for (int i = 0; i <= 20; i++) {
+            coordinates[i * 2] = Math.min(i, 10);
+            coordinates[i * 2 + 1] = Math.max(0, i - 10);
+        }
+        Simplifier simplifier = new Simplifier();
+        int kept = simplifier.simplify(coordinates, 21, 0.5);
+        assertEquals(3, kept);
+        assertTrue(simplifier.isKept(0));
+        assertTrue(simplifier.isKept(10));
+        assertTrue(simplifier.isKept(20));
+        assertFalse(simplifier.isKept(5));
+        // Kept points are moved to the front
+        assertEquals(10, coordinates[2], 0);
+        assertEquals(0, coordinates[3], 0);
+        assertEquals(10, coordinates[4], 0);
+        assertEquals(10, coordinates[5], 0);
+    }
+
+    @Test
+    public void simplify_staysWithinEpsilon() {
+        int count = 50_000;
+        float[] original = new float[count * 2];
+        for (int i = 0; i < count; i++) {
+            original[i * 2] = i * 0.1f;
+            original[i * 2 + 1] = (float) Math.sin(i * 0.01) * 20;
+        }
+        Simplifier simplifier = new Simplifier();
+        float[] coordinates = simplifier.getBuffer(count);
+        System.arraycopy(original, 0, coordinates, 0, count * 2);
+        int kept = simplifier.simplify(coordinates, count, 0.25);
+        assertTrue("Kept " + kept + " points", kept > 2 && kept < count / 10);
+        // Every point that was thrown away is close to the segment between the kept points around it
+        int previous = 0;
+        for (int i = 1; i < count; i++) {
+            if (simplifier.isKept(i)) {
+                for (int j = previous + 1; j < i; j++) {
+                    float distance = Simplifier.distanceToSegmentSquared(original[j * 2], original[j * 2 + 1],
+                            original[previous * 2], original[previous * 2 + 1], original[i * 2], original[i * 2 + 1]);
+                    assertTrue(distance <= 0.25 * 0.25 + 1e-4);
+                }
+                previous = i;
+            }
+        }
+        assertTrue(simplifier.isKept(count - 1));
+    }
+
+    @Test
+    public void simplify_handlesClosedLoops() {
+        // A square that ends where it starts, which breaks RDP with distance to an infinite line
+        float[] coordinates = {0, 0, 10, 0, 10, 10, 0, 10, 0, 0};
+        int kept = new Simplifier().simplify(coordinates, 5, 1);
+        assertEquals(5, kept);
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+public class SpatialIndexTest {
+    private static final int COUNT = 5000;
+
+    /**
+     * Makes COUNT random 10x10 boxes in a 1000x1000 area
+     */
+    private static float[][] randomBoxes() {
+        Random random = new Random(42);
+        float[][] boxes = new float[COUNT][];
+        for (int i = 0; i < COUNT; i++) {
+            float x = random.nextFloat() * 1000;
+            float y = random.nextFloat() * 1000;
+            boxes[i] = new float[]{x, y, x + 10, y + 10};
+        }
+        return boxes;
+    }
+
+    private static ArrayList<Integer> bruteForce(float[][] boxes, boolean[] removed, float left, float top, float right, float bottom) {
+        ArrayList<Integer> found = new ArrayList<>();
+        for (int i = 0; i < boxes.length; i++) {
+            float[] box = boxes[i];
+            if (!removed[i] && box[0] <= right && box[2] >= left && box[1] <= bottom && box[3] >= top) {
+                found.add(i);
+            }
+        }
+        return found;
+    }
+
+    private static void assertQuery(SpatialIndex index, float[][] boxes, boolean[] removed, float left, float top, float right, float bottom) {
+        ArrayList<Integer> expected = bruteForce(boxes, removed, left, top, right, bottom);
+        int count = index.query(left, top, right, bottom);
+        assertEquals(expected.size(), count);
+        for (int i = 0; i < count; i++) {
+            assertEquals((int) expected.get(i), index.getResult(i));
+        }
+    }
+
+    @Test
+    public void query_matchesLinearScan() {
+        float[][] boxes = randomBoxes();
+        boolean[] removed = new boolean[COUNT];
+        SpatialIndex index = new SpatialIndex();
+        for (int i = 0; i < COUNT; i++) {
+            index.insert(i, boxes[i][0], boxes[i][1], boxes[i][2], boxes[i][3]);
+        }
+        assertQuery(index, boxes, removed, 100, 100, 300, 250);
+        assertQuery(index, boxes, removed, -50, -50, 2000, 2000);
+        assertQuery(index, boxes, removed, 500, 500, 500, 500);
+        // Removes every third box and tries again
+        for (int i = 0; i < COUNT; i += 3) {
+            index.remove(i);
+            removed[i] = true;
+        }
+        assertQuery(index, boxes, removed, 100, 100, 300, 250);
+        assertQuery(index, boxes, removed, -50, -50, 2000, 2000);
+    }
+
+    @Test
+    public void insert_staysBalanced() {
+        // Boxes added left to right would make a very deep tree without rebalancing
+        SpatialIndex index = new SpatialIndex();
+        for (int i = 0; i < COUNT; i++) {
+            index.insert(i, i * 10, 0, i * 10 + 5, 5);
+        }
+        assertTrue("Tree is " + index.getHeight() + " levels deep", index.getHeight() < 40);
+        assertEquals(3, index.query(15, 0, 35, 5));
+        assertEquals(1, index.getResult(0));
+        assertEquals(3, index.getResult(2));
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.pastthepixels.freepaint.Graphics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class StrokeEraserTest {
+    /**
+     * A rectangle to erase with
+     */
+    private static FlattenedPath rectangle(float left, float top, float right, float bottom) {
+        PointBuffer points = new PointBuffer();
+        points.add(left, top, Point.COMMANDS.move, 0);
+        points.add(right, top, Point.COMMANDS.line, 0);
+        points.add(right, bottom, Point.COMMANDS.line, 0);
+        points.add(left, bottom, Point.COMMANDS.line, 0);
+        return new FlattenedPath(points);
+    }
+
+    private static float evaluate(float p0, float p1, float p2, float p3, float t) {
+        float mt = 1 - t;
+        return mt * mt * mt * p0 + 3 * mt * mt * t * p1 + 3 * mt * t * t * p2 + t * t * t * p3;
+    }
+
+    @Test
+    public void erase_cutsBetweenPoints() {
+        // The eraser doesn't cover either point, but crosses the line between them
+        PointBuffer stroke = new PointBuffer();
+        stroke.add(0, 50, Point.COMMANDS.none, 0);
+        stroke.add(100, 50, Point.COMMANDS.none, 0);
+        PointBuffer out = new PointBuffer();
+        assertTrue(StrokeEraser.erase(stroke, rectangle(40, 0, 60, 100), out));
+        assertEquals(4, out.size());
+        assertEquals(0, out.getX(0), 0);
+        assertEquals(40, out.getX(1), 0.001);
+        assertEquals(Point.COMMANDS.move, out.getCommand(2));
+        assertEquals(60, out.getX(2), 0.001);
+        assertEquals(100, out.getX(3), 0);
+    }
+
+    @Test
+    public void erase_removesEverythingInside() {
+        PointBuffer stroke = new PointBuffer();
+        for (int i = 0; i <= 1000; i++) {
+            stroke.add(i, (float) Math.sin(i * 0.1) * 20, Point.COMMANDS.none, 0);
+        }
+        PointBuffer out = new PointBuffer();
+        assertTrue(StrokeEraser.erase(stroke, rectangle(100.5f, -100, 200.5f, 100), out));
+        // Cut once, at the edges of the eraser
+        int moves = 0;
+        for (int i = 0; i < out.size(); i++) {
+            assertFalse(out.getX(i) > 100.51f && out.getX(i) < 200.49f);
+            if (i > 0 && out.getCommand(i) == Point.COMMANDS.move) {
+                moves++;
+            }
+        }
+        assertEquals(1, moves);
+        assertEquals(1001 - 100 + 2, out.size());
+    }
+
+    @Test
+    public void erase_keepsCurveShape() {
+        // One curved segment, cut in the middle
+        PointBuffer stroke = new PointBuffer();
+        stroke.add(0, 0, Point.COMMANDS.none, 0);
+        stroke.add(100, 0, Point.COMMANDS.none, 0);
+        stroke.setRightHandle(0, 30, 20);
+        stroke.setLeftHandle(1, -30, 20);
+        PointBuffer out = new PointBuffer();
+        assertTrue(StrokeEraser.erase(stroke, rectangle(45, -100, 55, 100), out));
+        assertEquals(4, out.size());
+        // Each piece follows the original curve
+        for (int piece = 0; piece < 2; piece++) {
+            int i = piece * 2 + 1;
+            for (float s = 0; s <= 1; s += 0.25f) {
+                float x = evaluate(out.getX(i - 1), out.getRightHandleX(i - 1), out.getLeftHandleX(i), out.getX(i), s);
+                float y = evaluate(out.getY(i - 1), out.getRightHandleY(i - 1), out.getLeftHandleY(i), out.getY(i), s);
+                // Finds where that is on the original curve by searching along it
+                double closest = Double.MAX_VALUE;
+                for (float t = 0; t <= 1; t += 0.0005f) {
+                    closest = Math.min(closest, Math.hypot(evaluate(0, 30, 70, 100, t) - x, evaluate(0, 20, 20, 0, t) - y));
+                }
+                assertTrue(closest < 0.1);
+            }
+        }
+    }
+
+    @Test
+    public void erase_leavesStrokesOutsideAlone() {
+        PointBuffer stroke = new PointBuffer();
+        stroke.add(0, 0, Point.COMMANDS.none, 0);
+        stroke.add(10, 10, Point.COMMANDS.none, 0);
+        assertFalse(StrokeEraser.erase(stroke, rectangle(50, 50, 60, 60), new PointBuffer()));
+    }
+}
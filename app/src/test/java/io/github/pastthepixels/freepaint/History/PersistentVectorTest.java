@@ -0,0 +1,89 @@
+package io.github.pastthepixels.freepaint.History;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+public class PersistentVectorTest {
+    /**
+     * Enough items for the tree to be three levels deep
+     */
+    private static final int COUNT = 40000;
+
+    @Test
+    public void append_keepsOrder() {
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        for (int i = 0; i < COUNT; i++) {
+            vector = vector.append(i);
+        }
+        assertEquals(COUNT, vector.size());
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(i, (int) vector.get(i));
+        }
+        int expected = 0;
+        for (int item : vector) {
+            assertEquals(expected++, item);
+        }
+        assertEquals(COUNT, expected);
+    }
+
+    @Test
+    public void set_leavesOldVersionAlone() {
+        ArrayList<Integer> items = new ArrayList<>();
+        for (int i = 0; i < COUNT; i++) {
+            items.add(i);
+        }
+        PersistentVector<Integer> before = PersistentVector.from(items);
+        PersistentVector<Integer> after = before.set(12345, -1).set(COUNT - 1, -2);
+        assertEquals(12345, (int) before.get(12345));
+        assertEquals(COUNT - 1, (int) before.get(COUNT - 1));
+        assertEquals(-1, (int) after.get(12345));
+        assertEquals(-2, (int) after.get(COUNT - 1));
+        assertEquals(12346, (int) after.get(12346));
+    }
+
+    @Test
+    public void removeLast_undoesAppend() {
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        ArrayList<PersistentVector<Integer>> versions = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            versions.add(vector);
+            vector = vector.append(i);
+        }
+        for (int i = 1999; i >= 0; i--) {
+            vector = vector.removeLast();
+            assertEquals(i, vector.size());
+            for (int j = 0; j < vector.size(); j += 97) {
+                assertEquals(versions.get(i).get(j), vector.get(j));
+            }
+        }
+        assertTrue(vector.isEmpty());
+        assertSame(PersistentVector.empty(), vector);
+    }
+
+    @Test
+    public void diff_findsOnlyChangedItems() {
+        ArrayList<Integer> items = new ArrayList<>();
+        for (int i = 0; i < COUNT; i++) {
+            items.add(i);
+        }
+        PersistentVector<Integer> before = PersistentVector.from(items);
+        PersistentVector<Integer> after = before.set(5, -1).set(33333, -2).removeLast().removeLast().append(-3);
+        ArrayList<Integer> changed = new ArrayList<>();
+        after.diff(before, (index, oldItem, newItem) -> changed.add(index));
+        assertEquals(4, changed.size());
+        assertEquals(5, (int) changed.get(0));
+        assertEquals(33333, (int) changed.get(1));
+        assertEquals(COUNT - 2, (int) changed.get(2));
+        assertEquals(COUNT - 1, (int) changed.get(3));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void get_outOfBounds() {
+        PersistentVector.empty().append(1).get(1);
+    }
+}